@@ -2,12 +2,20 @@ package doo.dah.aui.artificial_unintelligence;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ArtificialUnIntelligenceApplication {
 
+    // Startup steps recorded for the startup timing report and /actuator/startup
+    private static final int STARTUP_STEP_CAPACITY = 10000;
+
     public static void main(String[] args) {
-        SpringApplication.run(ArtificialUnIntelligenceApplication.class, args);
+        SpringApplication application = new SpringApplication(ArtificialUnIntelligenceApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEP_CAPACITY));
+        application.run(args);
     }
 
 }
@@ -0,0 +1,162 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import doo.dah.aui.artificial_unintelligence.util.TokenEncodings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the prompt within a token budget. Runs after {@link QuestionAnswerAdvisor} and the
+ * chat memory advisor and repacks what they added:
+ * <ul>
+ *     <li>retrieved documents are taken best score first, near-duplicates are dropped and
+ *     they may use up to {@code documentShare} of the budget left after system and user text</li>
+ *     <li>conversation history fills what is left, newest first, so the oldest turns are
+ *     trimmed first</li>
+ * </ul>
+ * Tokens are counted with the same CL100K encoding the text splitter uses.
+ */
+public class ContextPackingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // User param QuestionAnswerAdvisor renders the retrieved documents into
+    public static final String QUESTION_ANSWER_CONTEXT = "question_answer_context";
+    // Advisor context key for the documents that made it into the prompt
+    public static final String PACKED_DOCUMENTS = "packed_documents";
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextPackingAdvisor.class);
+    private static final int SHINGLE_SIZE = 3;
+
+    private final int maxPromptTokens;
+    private final double documentShare;
+    private final double duplicateThreshold;
+
+    /**
+     * @param maxPromptTokens    token budget for the whole prompt
+     * @param documentShare      fraction of the budget left after system and user text that
+     *                           documents may use before history gets the rest
+     * @param duplicateThreshold Jaccard similarity of word shingles above which a document
+     *                           counts as a near-duplicate of one already packed
+     */
+    public ContextPackingAdvisor(int maxPromptTokens, double documentShare, double duplicateThreshold) {
+        this.maxPromptTokens = maxPromptTokens;
+        this.documentShare = documentShare;
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(pack(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return chain.nextAroundStream(pack(advisedRequest));
+    }
+
+    @SuppressWarnings("unchecked")
+    AdvisedRequest pack(AdvisedRequest request) {
+        int fixed = countTokens(request.systemText()) + countTokens(request.userText());
+        int remaining = Math.max(0, maxPromptTokens - fixed);
+
+        List<Document> retrieved = request.adviseContext().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS)
+                instanceof List<?> docs ? (List<Document>) docs : List.of();
+        List<Document> packedDocuments = packDocuments(retrieved, (int) (remaining * documentShare));
+        int documentTokens = packedDocuments.stream().mapToInt(doc -> countTokens(doc.getText())).sum();
+
+        List<Message> packedHistory = packHistory(request.messages(), remaining - documentTokens);
+
+        logger.debug("Packed {}/{} documents and {}/{} history messages into a {} token budget",
+                packedDocuments.size(), retrieved.size(), packedHistory.size(), request.messages().size(),
+                maxPromptTokens);
+
+        AdvisedRequest.Builder builder = AdvisedRequest.from(request).messages(packedHistory);
+        if (request.userParams().containsKey(QUESTION_ANSWER_CONTEXT)) {
+            Map<String, Object> userParams = new HashMap<>(request.userParams());
+            userParams.put(QUESTION_ANSWER_CONTEXT, packedDocuments.stream()
+                    .map(Document::getText)
+                    .collect(Collectors.joining(System.lineSeparator())));
+            Map<String, Object> context = new HashMap<>(request.adviseContext());
+            context.put(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, packedDocuments);
+            context.put(PACKED_DOCUMENTS, packedDocuments);
+            builder.userParams(userParams).adviseContext(context);
+        }
+        return builder.build();
+    }
+
+    private List<Document> packDocuments(List<Document> documents, int budget) {
+        List<Document> byScore = new ArrayList<>(documents);
+        byScore.sort(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        List<Document> packed = new ArrayList<>();
+        List<Set<String>> packedShingles = new ArrayList<>();
+        int used = 0;
+        for (Document doc : byScore) {
+            if (doc.getText() == null) continue;
+            Set<String> shingles = shingles(doc.getText());
+            if (packedShingles.stream().anyMatch(other -> jaccard(shingles, other) >= duplicateThreshold)) {
+                continue;
+            }
+            int tokens = countTokens(doc.getText());
+            // Skip rather than stop, a shorter lower ranked document may still fit
+            if (used + tokens > budget) continue;
+
+            packed.add(doc);
+            packedShingles.add(shingles);
+            used += tokens;
+        }
+        return packed;
+    }
+
+    private List<Message> packHistory(List<Message> messages, int budget) {
+        Deque<Message> kept = new ArrayDeque<>();
+        int used = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            int tokens = countTokens(messages.get(i).getText());
+            if (used + tokens > budget) break;
+            kept.addFirst(messages.get(i));
+            used += tokens;
+        }
+        return new ArrayList<>(kept);
+    }
+
+    private int countTokens(String text) {
+        return text == null || text.isEmpty() ? 0 : TokenEncodings.cl100k().countTokens(text);
+    }
+
+    private static Set<String> shingles(String text) {
+        String[] words = text.toLowerCase(Locale.ROOT).split("\\W+");
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+            shingles.add(String.join(" ", Arrays.copyOfRange(words, i, i + SHINGLE_SIZE)));
+        }
+        if (shingles.isEmpty()) shingles.add(String.join(" ", words));
+        return shingles;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) return 1.0;
+        int intersection = 0;
+        for (String shingle : a) {
+            if (b.contains(shingle)) intersection++;
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    @Override
+    public String getName() {
+        return "ContextPackingAdvisor";
+    }
+
+    // After QuestionAnswerAdvisor (0)
+    @Override
+    public int getOrder() {
+        return 100;
+    }
+}
@@ -0,0 +1,128 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import doo.dah.aui.artificial_unintelligence.config.ModelRoutingProperties;
+import doo.dah.aui.artificial_unintelligence.vectorstore.HybridSearchVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Sends simple turns to a small, fast model and everything else to the large one. Runs after
+ * {@link QuestionAnswerAdvisor} so retrieval confidence can be taken into account. A turn
+ * is simple when all of these hold:
+ * <ul>
+ *     <li>the question has at most {@code maxSimpleWords} words</li>
+ *     <li>the conversation has at most {@code maxSimpleHistory} earlier messages</li>
+ *     <li>nothing was retrieved, or the best vector match has a cosine similarity of at least
+ *     {@code minRetrievalScore}</li>
+ * </ul>
+ * Callers can force a tier with {@link #ROUTE_KEY}. Every decision is counted in
+ * {@code chat.model.route} by tier, model and reason.
+ */
+public class ModelRoutingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // Advisor context key for a per-request override, "small" or "large"
+    public static final String ROUTE_KEY = "model_route";
+    // Advisor context key for the question as typed; the user text has the RAG prompt appended by now
+    public static final String QUESTION_KEY = "model_route_question";
+
+    public static final String SMALL = "small";
+    public static final String LARGE = "large";
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRoutingAdvisor.class);
+
+    private final ModelRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public ModelRoutingAdvisor(ModelRoutingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(route(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return chain.nextAroundStream(route(advisedRequest));
+    }
+
+    AdvisedRequest route(AdvisedRequest request) {
+        if (!properties.isEnabled() || properties.getSmallModel().isBlank()) {
+            return request;
+        }
+        Decision decision = decide(request);
+        String model = SMALL.equals(decision.tier()) ? properties.getSmallModel() : properties.getLargeModel();
+
+        meterRegistry.counter("chat.model.route", "tier", decision.tier(),
+                "model", model.isBlank() ? "default" : model, "reason", decision.reason()).increment();
+        logger.debug("Routing to the {} model ({})", decision.tier(), decision.reason());
+        if (model.isBlank()) {
+            return request;
+        }
+
+        OllamaOptions options = request.chatOptions() instanceof OllamaOptions current
+                ? OllamaOptions.fromOptions(current) : new OllamaOptions();
+        options.setModel(model);
+        return AdvisedRequest.from(request).chatOptions(options).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Decision decide(AdvisedRequest request) {
+        Object override = request.adviseContext().get(ROUTE_KEY);
+        if (override instanceof String route && !route.isBlank()) {
+            String tier = route.toLowerCase(Locale.ROOT);
+            if (SMALL.equals(tier) || LARGE.equals(tier)) {
+                return new Decision(tier, "override");
+            }
+        }
+
+        String question = request.adviseContext().get(QUESTION_KEY) instanceof String typed
+                ? typed : Objects.requireNonNullElse(request.userText(), "");
+        if (question.trim().split("\\s+").length > properties.getMaxSimpleWords()) {
+            return new Decision(LARGE, "length");
+        }
+        if (request.messages().size() > properties.getMaxSimpleHistory()) {
+            return new Decision(LARGE, "depth");
+        }
+        List<Document> retrieved = request.adviseContext().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS)
+                instanceof List<?> docs ? (List<Document>) docs : List.of();
+        // Fused scores are rank based, compare the cosine similarity of the vector leg instead.
+        // Without one nothing was retrieved, or the keyword fast path found a strong match.
+        double bestScore = retrieved.stream()
+                .map(doc -> doc.getMetadata().get(HybridSearchVectorStore.VECTOR_SCORE))
+                .filter(Number.class::isInstance)
+                .mapToDouble(score -> ((Number) score).doubleValue())
+                .max()
+                .orElse(1.0);
+        if (bestScore < properties.getMinRetrievalScore()) {
+            return new Decision(LARGE, "retrieval");
+        }
+        return new Decision(SMALL, "simple");
+    }
+
+    @Override
+    public String getName() {
+        return "ModelRoutingAdvisor";
+    }
+
+    // After QuestionAnswerAdvisor (0), before ContextPackingAdvisor (100)
+    @Override
+    public int getOrder() {
+        return 50;
+    }
+
+    private record Decision(String tier, String reason) {
+    }
+}
@@ -1,10 +1,13 @@
 package doo.dah.aui.artificial_unintelligence.advisors;
 
 import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
-import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import doo.dah.aui.artificial_unintelligence.service.QuestionLogWriter;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.security.core.Authentication;
@@ -12,80 +15,54 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
-import java.lang.reflect.Method;
 import java.time.Instant;
-
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Logs a compact record of every chat turn: who asked what in which conversation, how
+ * long and how large the answer was, token usage and which chunks went into the prompt
+ * after {@link ContextPackingAdvisor} trimmed the retrieved ones. Runs before
+ * {@link QuestionAnswerAdvisor} so it sees the question as the user typed it, and records
+ * once the answer is finished.
+ */
 @Component
 @Profile("local")
 public class SQLStorageAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
 
-    private static final Logger logger = LoggerFactory.getLogger(SQLStorageAdvisor.class);
+    // Advisor context key callers can use to pass the user when the stream runs off the request thread
+    public static final String USERNAME_KEY = "sql_storage_username";
 
-    private final UserQuestionRepository userQuestionRepository;
+    private final QuestionLogWriter questionLogWriter;
 
     @Autowired
-    public SQLStorageAdvisor(UserQuestionRepository userQuestionRepository) {
-        this.userQuestionRepository = userQuestionRepository;
+    public SQLStorageAdvisor(QuestionLogWriter questionLogWriter) {
+        this.questionLogWriter = questionLogWriter;
     }
 
     @Override
     public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
-        // Log the request to understand its structure
-        logger.info("AdvisedRequest class: {}", advisedRequest.getClass().getName());
-        logger.info("AdvisedRequest toString: {}", advisedRequest);
-
-        // Log available methods
-        logger.info("Available methods:");
-        for (Method method : advisedRequest.getClass().getMethods()) {
-            if (method.getName().startsWith("get") && method.getParameterCount() == 0) {
-                logger.info(" - {}", method.getName());
-            }
-        }
-
-        // Store the user question before proceeding
-        storeUserQuestion(advisedRequest);
-
-        // Continue with the chain using nextAroundCall
-
-        return chain.nextAroundCall(advisedRequest);
+        Interaction interaction = new Interaction(advisedRequest);
+        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+        interaction.observe(advisedResponse);
+        // Written behind, the chat turn never waits on the database
+        questionLogWriter.enqueue(interaction.toQuestion());
+        return advisedResponse;
     }
 
     @Override
     public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
-        // Store the user question before proceeding
-        storeUserQuestion(advisedRequest);
-
-        // Continue with the chain using nextAroundStream
-        return chain.nextAroundStream(advisedRequest);
-    }
-
-    private void storeUserQuestion(AdvisedRequest advisedRequest) {
-        String username = getCurrentUsername();
-
-        // Extract the user's question from the advisedRequest
-        // Since the exact structure of AdvisedRequest is unclear, let's use a safer approach
-        String question;
-
-        try {
-            // Try to access the request content as safely as possible
-            // This uses reflection to avoid compile-time errors if the methods don't exist
-            question = advisedRequest.toString();
-        } catch (Exception e) {
-            question = "[Unable to extract question content]";
-        }
-
-        Instant now = Instant.now();
-
-        UserQuestion userQuestion = UserQuestion.builder()
-                .username(username)
-                .question(question)
-                .timestamp(now)
-                .build();
-
-        userQuestionRepository.save(userQuestion);
+        return Flux.defer(() -> {
+            Interaction interaction = new Interaction(advisedRequest);
+            return chain.nextAroundStream(advisedRequest)
+                    .doOnNext(interaction::observe)
+                    // Cancelled turns are logged too, with the part of the answer that was sent
+                    .doFinally(signal -> questionLogWriter.enqueue(interaction.toQuestion()));
+        });
     }
 
-    private String getCurrentUsername() {
+    private static String getCurrentUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
             return authentication.getName();
@@ -98,8 +75,79 @@ public class SQLStorageAdvisor implements CallAroundAdvisor, StreamAroundAdvisor
         return "SQLStorageAdvisor";
     }
 
+    // Before QuestionAnswerAdvisor (0) rewrites the user text
     @Override
     public int getOrder() {
-        return 0;
+        return -10;
+    }
+
+    private static final class Interaction {
+        private final String username;
+        private final String conversationId;
+        private final String question;
+        private final Instant timestamp = Instant.now();
+        private final long startedAt = System.nanoTime();
+        private int answerLength;
+        private Long promptTokens;
+        private Long completionTokens;
+        private String documentIds;
+
+        private Interaction(AdvisedRequest request) {
+            Object contextUsername = request.adviseContext().get(USERNAME_KEY);
+            this.username = contextUsername != null ? contextUsername.toString() : getCurrentUsername();
+            this.conversationId = conversationId(request.adviseContext().get(
+                    AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY), username);
+            this.question = request.userText() != null ? request.userText() : "";
+        }
+
+        private synchronized void observe(AdvisedResponse advisedResponse) {
+            ChatResponse response = advisedResponse.response();
+            if (response != null) {
+                if (response.getResult() != null && response.getResult().getOutput() != null
+                        && response.getResult().getOutput().getText() != null) {
+                    answerLength += response.getResult().getOutput().getText().length();
+                }
+                Usage usage = response.getMetadata().getUsage();
+                if (usage != null && usage.getPromptTokens() != null && usage.getPromptTokens().longValue() > 0) {
+                    Number prompt = usage.getPromptTokens();
+                    Number total = usage.getTotalTokens();
+                    promptTokens = prompt.longValue();
+                    completionTokens = total != null ? Math.max(0, total.longValue() - prompt.longValue()) : null;
+                }
+            }
+            if (documentIds == null && promptDocuments(advisedResponse) instanceof List<?> documents) {
+                documentIds = documents.stream()
+                        .filter(Document.class::isInstance)
+                        .map(document -> ((Document) document).getId())
+                        .collect(Collectors.joining(","));
+            }
+        }
+
+        // Without packing every retrieved document went into the prompt
+        private static Object promptDocuments(AdvisedResponse advisedResponse) {
+            Object packed = advisedResponse.adviseContext().get(ContextPackingAdvisor.PACKED_DOCUMENTS);
+            return packed != null ? packed : advisedResponse.adviseContext().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS);
+        }
+
+        private synchronized UserQuestion toQuestion() {
+            return UserQuestion.builder()
+                    .username(username)
+                    .conversationId(conversationId)
+                    .question(question)
+                    .answerLength(answerLength)
+                    .promptTokens(promptTokens)
+                    .completionTokens(completionTokens)
+                    .latencyMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                    .documentIds(documentIds)
+                    .timestamp(timestamp)
+                    .build();
+        }
+
+        // Memory keys are "<username>:<conversation>", only the conversation part is stored
+        private static String conversationId(Object memoryKey, String username) {
+            if (memoryKey == null) return null;
+            String key = memoryKey.toString();
+            return key.startsWith(username + ":") ? key.substring(username.length() + 1) : key;
+        }
     }
-}
\ No newline at end of file
+}
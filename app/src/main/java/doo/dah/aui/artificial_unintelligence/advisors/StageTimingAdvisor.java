@@ -0,0 +1,75 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.advisor.api.*;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Marker placed between the real advisors to time the request side of each one. The first
+ * marker starts a clock in the advise context; every later marker records the time since
+ * the previous one as {@code chat.advisor.duration{advisor=<stage>}}, i.e. the time spent
+ * in the advisors ordered between the two markers.
+ */
+public class StageTimingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+    public static final String TIMER = "chat.advisor.duration";
+
+    private static final String CLOCK_KEY = "stage_timing_clock";
+
+    private final String stage;
+    private final int order;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param stage name of the advisor(s) ordered just before this marker, null for the
+     *              first marker that only starts the clock
+     * @param order position in the chain, between the advisors being timed
+     */
+    public StageTimingAdvisor(String stage, int order, MeterRegistry meterRegistry) {
+        this.stage = stage;
+        this.order = order;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(lap(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return chain.nextAroundStream(lap(advisedRequest));
+    }
+
+    private AdvisedRequest lap(AdvisedRequest request) {
+        long now = System.nanoTime();
+        if (request.adviseContext().get(CLOCK_KEY) instanceof long[] clock) {
+            if (stage != null) {
+                Timer.builder(TIMER)
+                        .tag("advisor", stage)
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(now - clock[0]));
+            }
+            clock[0] = now;
+            return request;
+        }
+
+        Map<String, Object> context = new HashMap<>(request.adviseContext());
+        context.put(CLOCK_KEY, new long[]{now});
+        return AdvisedRequest.from(request).adviseContext(context).build();
+    }
+
+    @Override
+    public String getName() {
+        return "StageTimingAdvisor" + (stage != null ? "[" + stage + "]" : "");
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+}
@@ -1,40 +1,89 @@
 package doo.dah.aui.artificial_unintelligence.config;
 
+import doo.dah.aui.artificial_unintelligence.advisors.ContextPackingAdvisor;
+import doo.dah.aui.artificial_unintelligence.advisors.ModelRoutingAdvisor;
 import doo.dah.aui.artificial_unintelligence.advisors.SQLStorageAdvisor;
-import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import doo.dah.aui.artificial_unintelligence.advisors.StageTimingAdvisor;
+import doo.dah.aui.artificial_unintelligence.embedding.MicroBatchingEmbeddingModel;
+import doo.dah.aui.artificial_unintelligence.service.ConversationMemoryStore;
+import doo.dah.aui.artificial_unintelligence.service.QuestionLogWriter;
+import doo.dah.aui.artificial_unintelligence.vectorstore.HybridSearchVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
 import org.springframework.ai.ollama.api.OllamaOptions;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
 
 @Configuration
+@EnableConfigurationProperties(ModelRoutingProperties.class)
 public class AiConfig {
 
     @Value("${app.bot.instructions}")
     protected String instructions;
 
     @Bean
-    public MessageChatMemoryAdvisor messageChatMemoryAdvisor() {
-        return new MessageChatMemoryAdvisor(new InMemoryChatMemory());
+    public MessageChatMemoryAdvisor messageChatMemoryAdvisor(ConversationMemoryStore conversationMemoryStore) {
+        return new MessageChatMemoryAdvisor(conversationMemoryStore);
+    }
+
+    // Everything injecting EmbeddingModel, including the vector stores, gets query embeddings batched
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.embedding.batch.enabled", havingValue = "true", matchIfMissing = true)
+    public MicroBatchingEmbeddingModel microBatchingEmbeddingModel(
+            OllamaEmbeddingModel ollamaEmbeddingModel,
+            MeterRegistry meterRegistry,
+            @Value("${app.embedding.batch.window:5ms}") Duration window,
+            @Value("${app.embedding.batch.max-size:32}") int maxSize
+    ) {
+        return new MicroBatchingEmbeddingModel(ollamaEmbeddingModel, window, maxSize, meterRegistry);
+    }
+
+    @Bean
+    public ContextPackingAdvisor contextPackingAdvisor(
+            @Value("${app.chat.context.max-prompt-tokens:3000}") int maxPromptTokens,
+            @Value("${app.chat.context.document-share:0.6}") double documentShare,
+            @Value("${app.chat.context.duplicate-threshold:0.8}") double duplicateThreshold
+    ) {
+        return new ContextPackingAdvisor(maxPromptTokens, documentShare, duplicateThreshold);
     }
 
+    // Timing markers sit between the real advisors, each one times the stage ordered before it.
+    // SQLStorageAdvisor only enqueues, its writes are timed as sqlite.write.duration; embedding
+    // and vector search are timed inside HybridSearchVectorStore.
     @Bean
     public ChatClient buildClient(
             ChatClient.Builder aiBuilder,
             MessageChatMemoryAdvisor messageChatMemoryAdvisor,
-            VectorStore pineconeVectorStore,
-            UserQuestionRepository userQuestionRepository
+            ContextPackingAdvisor contextPackingAdvisor,
+            HybridSearchVectorStore hybridVectorStore,
+            QuestionLogWriter questionLogWriter,
+            ModelRoutingProperties modelRoutingProperties,
+            MeterRegistry meterRegistry
     ) {
         return aiBuilder
                 .defaultAdvisors(
+                        new StageTimingAdvisor(null, Ordered.HIGHEST_PRECEDENCE, meterRegistry),
                         messageChatMemoryAdvisor,
-                        new QuestionAnswerAdvisor(pineconeVectorStore),
-                        new SQLStorageAdvisor(userQuestionRepository)
+                        new StageTimingAdvisor("memory", Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER + 1, meterRegistry),
+                        new SQLStorageAdvisor(questionLogWriter),
+                        // Retrieval blocks on the vector store and SQLite, keep it on boundedElastic
+                        QuestionAnswerAdvisor.builder(hybridVectorStore).protectFromBlocking(true).build(),
+                        new StageTimingAdvisor("retrieval", 5, meterRegistry),
+                        new ModelRoutingAdvisor(modelRoutingProperties, meterRegistry),
+                        contextPackingAdvisor,
+                        new StageTimingAdvisor("context-packing", 110, meterRegistry)
                 )
                 .defaultSystem(instructions)
                 .defaultOptions(new OllamaOptions())
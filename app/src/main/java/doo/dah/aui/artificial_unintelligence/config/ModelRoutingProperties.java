@@ -0,0 +1,21 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.chat.routing")
+public class ModelRoutingProperties {
+    private boolean enabled = true;
+    // Model for simple turns; routing is off while this is blank
+    private String smallModel = "";
+    // Model for everything else, blank keeps the configured chat model
+    private String largeModel = "";
+    // Questions longer than this many words go to the large model
+    private int maxSimpleWords = 20;
+    // Earlier messages in the conversation beyond which a turn counts as involved
+    private int maxSimpleHistory = 4;
+    // Cosine similarity of the best vector match below which retrieved context is too weak
+    // for the small model to work with
+    private double minRetrievalScore = 0.75;
+}
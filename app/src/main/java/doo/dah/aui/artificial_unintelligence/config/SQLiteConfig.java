@@ -1,13 +1,83 @@
 package doo.dah.aui.artificial_unintelligence.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.community.dialect.SQLiteDialect;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * SQLite tuned for concurrent use: WAL journaling so readers never block the writer, a
+ * single-connection write pool (SQLite allows one writer at a time, queueing in the pool
+ * beats failing with SQLITE_BUSY) and a separate read-only pool. Read-only transactions,
+ * which includes all Spring Data finder methods, are routed to the read pool.
+ */
 @Configuration
 public class SQLiteConfig {
+    @Value("${spring.datasource.url}")
+    private String url;
+    @Value("${app.sqlite.read-pool-size:4}")
+    private int readPoolSize;
+    @Value("${app.sqlite.busy-timeout:5s}")
+    private Duration busyTimeout;
+    @Value("${app.sqlite.synchronous:NORMAL}")
+    private String synchronous;
+    // Negative values are KiB, as in PRAGMA cache_size
+    @Value("${app.sqlite.cache-size:-20000}")
+    private int cacheSize;
+    @Value("${app.sqlite.mmap-size:268435456}")
+    private long mmapSize;
+
     @Bean
     public SQLiteDialect sqliteDialect() {
         return new SQLiteDialect();
     }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteWriteDataSource() {
+        return pool("sqlite-write", 1, false);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource sqliteReadDataSource() {
+        return pool("sqlite-read", readPoolSize, true);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("sqliteWriteDataSource") DataSource writeDataSource,
+                                 @Qualifier("sqliteReadDataSource") DataSource readDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(writeDataSource);
+        proxy.setReadOnlyDataSource(readDataSource);
+        return proxy;
+    }
+
+    private HikariDataSource pool(String name, int size, boolean readOnly) {
+        org.sqlite.SQLiteConfig pragmas = new org.sqlite.SQLiteConfig();
+        pragmas.setJournalMode(org.sqlite.SQLiteConfig.JournalMode.WAL);
+        pragmas.setSynchronous(org.sqlite.SQLiteConfig.SynchronousMode.valueOf(synchronous));
+        pragmas.setBusyTimeout((int) busyTimeout.toMillis());
+        pragmas.setCacheSize(cacheSize);
+        // sqlite-jdbc only honours read-only when the connection is opened, not via setReadOnly later
+        pragmas.setReadOnly(readOnly);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setMaximumPoolSize(size);
+        config.setMinimumIdle(size);
+        // Matches the open mode, so Hikari never resets a read connection to read-write
+        config.setReadOnly(readOnly);
+        config.setDataSourceProperties(pragmas.toProperties());
+        config.setConnectionInitSql("PRAGMA mmap_size=" + mmapSize);
+        return new HikariDataSource(config);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-shot schema migration. Under the {@code schema-migrate} profile Hibernate updates the
+ * schema while the context starts and the FTS tables are created; this runner then exits so
+ * the step can run once per deploy, ahead of instances started with {@code ddl-auto: none}.
+ */
+@Slf4j
+@Component
+@Profile("schema-migrate")
+@RequiredArgsConstructor
+public class SchemaMigrationRunner implements ApplicationRunner {
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Schema migration complete, shutting down");
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -32,6 +32,10 @@ public class SecurityConfig {
                 .authorizeHttpRequests(
                         (authz) ->
                                 authz
+                                        .requestMatchers(
+                                                "/actuator/health/**",
+                                                "/actuator/prometheus"
+                                        ).permitAll()
                                         .requestMatchers(
                                                 "/root/protected",
                                                 "/chat/**",
@@ -39,7 +43,9 @@ public class SecurityConfig {
                                         ).authenticated()
                                         .requestMatchers(
                                                 "/pinecone/**",
-                                                "/root/admin"
+                                                "/root/admin",
+                                                "/analytics/**",
+                                                "/actuator/**"
                                         ).access(
                                                 OAuth2AuthorizationManagers.hasScope("site:admin")
                                         )
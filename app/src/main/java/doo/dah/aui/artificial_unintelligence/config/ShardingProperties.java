@@ -0,0 +1,18 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.vectorstore.sharding")
+public class ShardingProperties {
+    private boolean enabled = false;
+    // Shard for content without a shard tag; lives in the index's configured namespace
+    private String defaultShard = "general";
+    // Shard (= ingest tag = Pinecone namespace) to the query keywords routed to it
+    private Map<String, List<String>> shards = new LinkedHashMap<>();
+}
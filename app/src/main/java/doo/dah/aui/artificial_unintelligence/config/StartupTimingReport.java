@@ -0,0 +1,71 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logs where startup time went once the application is ready: the Boot and context
+ * phases in the order they ran, followed by the slowest bean instantiations. Bean times
+ * include the beans they pulled in as dependencies.
+ * <p>
+ * The full timeline stays available at {@code /actuator/startup}.
+ */
+@Slf4j
+@Component
+public class StartupTimingReport implements ApplicationListener<ApplicationReadyEvent> {
+    private static final String BEAN_INSTANTIATE = "spring.beans.instantiate";
+
+    @Value("${app.startup.report.slowest-beans:10}")
+    private int slowestBeans;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!(event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup startup)) {
+            return;
+        }
+        List<StartupTimeline.TimelineEvent> events = startup.getBufferedTimeline().getEvents();
+
+        // Phases can repeat (one post-process step per processor), so their time is summed
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        for (StartupTimeline.TimelineEvent timelineEvent : events) {
+            String name = timelineEvent.getStartupStep().getName();
+            if (!BEAN_INSTANTIATE.equals(name)) {
+                phases.merge(name, timelineEvent.getDuration(), Duration::plus);
+            }
+        }
+
+        StringBuilder report = new StringBuilder("Startup ready in ")
+                .append(event.getTimeTaken().toMillis()).append(" ms");
+        phases.forEach((name, duration) -> report.append(System.lineSeparator())
+                .append(String.format("  %6d ms  %s", duration.toMillis(), name)));
+
+        report.append(System.lineSeparator()).append("  slowest beans:");
+        events.stream()
+                .filter(timelineEvent -> BEAN_INSTANTIATE.equals(timelineEvent.getStartupStep().getName()))
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(slowestBeans)
+                .forEach(timelineEvent -> report.append(System.lineSeparator())
+                        .append(String.format("  %6d ms  %s", timelineEvent.getDuration().toMillis(),
+                                beanName(timelineEvent.getStartupStep()))));
+        log.info(report.toString());
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) return tag.getValue();
+        }
+        return step.getName();
+    }
+}
@@ -0,0 +1,96 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import doo.dah.aui.artificial_unintelligence.service.DocumentCatalogService;
+import doo.dah.aui.artificial_unintelligence.service.LexicalIndexService;
+import doo.dah.aui.artificial_unintelligence.vectorstore.CachingVectorStore;
+import doo.dah.aui.artificial_unintelligence.vectorstore.CatalogVectorStore;
+import doo.dah.aui.artificial_unintelligence.vectorstore.HybridSearchVectorStore;
+import doo.dah.aui.artificial_unintelligence.vectorstore.ShardRouter;
+import doo.dah.aui.artificial_unintelligence.vectorstore.ShardedVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.autoconfigure.vectorstore.pinecone.PineconeVectorStoreProperties;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.pinecone.PineconeVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class VectorStoreConfig {
+
+    // One Pinecone namespace per shard; the default shard reuses the auto-configured store
+    @Bean
+    @ConditionalOnProperty(name = "app.vectorstore.sharding.enabled", havingValue = "true")
+    public ShardedVectorStore shardedVectorStore(
+            PineconeVectorStore pineconeVectorStore,
+            PineconeVectorStoreProperties pineconeProperties,
+            EmbeddingModel embeddingModel,
+            ShardingProperties shardingProperties
+    ) {
+        Map<String, VectorStore> shards = new HashMap<>();
+        shards.put(shardingProperties.getDefaultShard(), pineconeVectorStore);
+        for (String shard : shardingProperties.getShards().keySet()) {
+            shards.put(shard, PineconeVectorStore.builder(embeddingModel)
+                    .apiKey(pineconeProperties.getApiKey())
+                    .projectId(pineconeProperties.getProjectId())
+                    .environment(pineconeProperties.getEnvironment())
+                    .indexName(pineconeProperties.getIndexName())
+                    .namespace(shard)
+                    .contentFieldName(pineconeProperties.getContentFieldName())
+                    .distanceMetadataFieldName(pineconeProperties.getDistanceMetadataFieldName())
+                    .build());
+        }
+        return new ShardedVectorStore(shards,
+                new ShardRouter(shardingProperties.getDefaultShard(), shardingProperties.getShards()));
+    }
+
+    // Wraps the sharded store when sharding is enabled, otherwise the auto-configured Pinecone store
+    @Bean
+    public CachingVectorStore cachingVectorStore(
+            PineconeVectorStore pineconeVectorStore,
+            ObjectProvider<ShardedVectorStore> shardedVectorStore,
+            MeterRegistry meterRegistry,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${app.vectorstore.cache.ttl:10m}") Duration ttl,
+            @Value("${app.vectorstore.cache.maximum-size:1000}") long maximumSize,
+            @Value("${app.vectorstore.delete-batch-size:500}") int deleteBatchSize
+    ) {
+        VectorStore delegate = shardedVectorStore.getIfAvailable(() -> pineconeVectorStore);
+        CachingVectorStore store = new CachingVectorStore(delegate, ttl, maximumSize, eventPublisher, deleteBatchSize);
+        store.bindTo(meterRegistry);
+        return store;
+    }
+
+    // Everything injecting VectorStore gets cached results with catalog metadata reattached
+    @Bean
+    @Primary
+    public CatalogVectorStore catalogVectorStore(CachingVectorStore cachingVectorStore,
+                                                 DocumentCatalogService documentCatalogService) {
+        return new CatalogVectorStore(cachingVectorStore, documentCatalogService);
+    }
+
+    // Used for RAG retrieval only, ingestion and admin endpoints keep talking to the primary store
+    @Bean
+    public HybridSearchVectorStore hybridVectorStore(
+            CatalogVectorStore catalogVectorStore,
+            LexicalIndexService lexicalIndexService,
+            DocumentCatalogService documentCatalogService,
+            @Value("${app.retrieval.hybrid.fast-path-min-score:12}") double fastPathMinScore,
+            @Value("${app.retrieval.hybrid.fast-path-min-margin:2}") double fastPathMinMargin,
+            MeterRegistry meterRegistry
+    ) {
+        return new HybridSearchVectorStore(catalogVectorStore, lexicalIndexService, documentCatalogService,
+                fastPathMinScore, fastPathMinMargin, meterRegistry);
+    }
+}
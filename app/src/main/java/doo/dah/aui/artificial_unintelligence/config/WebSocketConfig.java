@@ -0,0 +1,26 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import doo.dah.aui.artificial_unintelligence.controller.ChatWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final ChatWebSocketHandler chatWebSocketHandler;
+
+    @Value("${app.chat.websocket.allowed-origins:}")
+    private String[] allowedOrigins;
+
+    // Authentication happens in the first frame, browsers cannot set headers on the handshake
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, "/ws/chat")
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+}
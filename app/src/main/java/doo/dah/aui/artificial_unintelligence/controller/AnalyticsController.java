@@ -0,0 +1,105 @@
+package doo.dah.aui.artificial_unintelligence.controller;
+
+import doo.dah.aui.artificial_unintelligence.models.QuestionRollup;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.service.QuestionAnalyticsService;
+import doo.dah.aui.artificial_unintelligence.service.QuestionArchive;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    private static final int MAX_LIMIT = 1000;
+
+    private final QuestionAnalyticsService questionAnalyticsService;
+    private final QuestionArchive questionArchive;
+
+    /**
+     * Hourly or daily question totals, defaults to the last 7 days
+     */
+    @GetMapping("rollups")
+    public ResponseEntity<?> rollups(
+            @RequestParam(defaultValue = "HOUR") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        String key = granularity.toUpperCase(Locale.ROOT);
+        if (!QuestionAnalyticsService.GRANULARITIES.containsKey(key)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "granularity must be one of "
+                    + QuestionAnalyticsService.GRANULARITIES.keySet()));
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(7));
+        List<QuestionRollup> rollups = questionAnalyticsService.rollups(key, start, end);
+        return ResponseEntity.ok(rollups);
+    }
+
+    /**
+     * Most recent logged questions, optionally for one user, defaults to the last 24 hours
+     */
+    @GetMapping("questions")
+    public List<UserQuestion> questions(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "100") int limit) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        return questionAnalyticsService.questions(username, start, end, Math.clamp(limit, 1, MAX_LIMIT));
+    }
+
+    /**
+     * Archived months with their segment counts
+     */
+    @GetMapping("archive")
+    public Map<String, Integer> archive() throws IOException {
+        Map<String, Integer> months = new LinkedHashMap<>();
+        for (YearMonth month : questionArchive.months()) {
+            months.put(month.toString(), questionArchive.segments(month).stream()
+                    .mapToInt(QuestionArchive.Segment::count).sum());
+        }
+        return months;
+    }
+
+    /**
+     * Stream archived questions of one month (yyyy-MM) as NDJSON
+     */
+    @GetMapping(value = "archive/{month}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<UserQuestion>> archivedQuestions(
+            @PathVariable String month,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Instant start = from != null ? from : yearMonth.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant end = to != null ? to : yearMonth.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        return ResponseEntity.ok(questionArchive.read(yearMonth, start, end,
+                question -> username == null || Objects.equals(username, question.getUsername())));
+    }
+}
@@ -3,10 +3,13 @@ package doo.dah.aui.artificial_unintelligence.controller;
 import doo.dah.aui.artificial_unintelligence.service.ChatService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
+import java.security.Principal;
+
 @RestController
 @RequestMapping("/chat")
 public class ChatController {
@@ -19,7 +22,11 @@ public class ChatController {
 
     //    @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @PostMapping
-    public Flux<String> question(@RequestBody String question) {
-        return chatService.streamResponse(question);
+    public Flux<String> question(@RequestBody String question,
+                                 @RequestHeader(value = "X-Conversation-Id", required = false) String conversationId,
+                                 @RequestHeader(value = "X-Model-Route", required = false) String route,
+                                 Principal principal) {
+        String user = principal != null ? principal.getName() : "anonymous";
+        return chatService.streamResponse(question, conversationId, user, route);
     }
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+package doo.dah.aui.artificial_unintelligence.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import doo.dah.aui.artificial_unintelligence.service.ChatService;
+import doo.dah.aui.artificial_unintelligence.service.GenerationRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat over one long-lived WebSocket instead of a POST per question. JSON frames:
+ * <ul>
+ *     <li>in: {@code auth {token}}, {@code chat {id, question, conversationId?, route?}}, {@code cancel {id}}</li>
+ *     <li>out: {@code authenticated}, {@code token {id, text}}, {@code done {id}}, {@code error {id?, message}}</li>
+ * </ul>
+ * The first frame must authenticate with the same bearer token the REST API takes; the
+ * connection is closed when that token expires unless another {@code auth} frame for the
+ * same user renews it. Several chats can run on one connection, told apart by their client
+ * chosen id. Tokens are coalesced into frames by count or time window and only pulled from
+ * the model as fast as frames go out; a client that reads too slowly gets disconnected
+ * instead of buffering without bound.
+ */
+@Slf4j
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+    private static final String STATE = "chatState";
+
+    private final ChatService chatService;
+    private final JwtDecoder jwtDecoder;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.chat.websocket.frame-max-tokens:16}")
+    private int frameMaxTokens;
+    @Value("${app.chat.websocket.frame-window:50ms}")
+    private Duration frameWindow;
+    @Value("${app.chat.websocket.max-streams-per-session:4}")
+    private int maxStreamsPerSession;
+    @Value("${app.chat.websocket.send-time-limit:10s}")
+    private Duration sendTimeLimit;
+    @Value("${app.chat.websocket.send-buffer-limit:524288}")
+    private int sendBufferLimit;
+
+    public ChatWebSocketHandler(ChatService chatService, JwtDecoder jwtDecoder, ObjectMapper objectMapper) {
+        this.chatService = chatService;
+        this.jwtDecoder = jwtDecoder;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Sends come from several streams; the decorator serializes them and closes the
+        // session once a slow client lets the send buffer or send time go over the limit
+        WebSocketSession sender = new ConcurrentWebSocketSessionDecorator(session,
+                (int) sendTimeLimit.toMillis(), sendBufferLimit);
+        session.getAttributes().put(STATE, new SessionState(sender));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        SessionState state = (SessionState) session.getAttributes().get(STATE);
+        JsonNode frame;
+        try {
+            frame = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            send(state, null, "error", Map.of("message", "Malformed frame"));
+            return;
+        }
+
+        String type = frame.path("type").asText();
+        if ("auth".equals(type)) {
+            authenticate(state, frame.path("token").asText());
+            return;
+        }
+        if (state.username == null) {
+            send(state, null, "error", Map.of("message", "Not authenticated"));
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        if (state.expiresAt != null && !Instant.now().isBefore(state.expiresAt)) {
+            expire(state);
+            return;
+        }
+
+        String id = frame.path("id").asText(null);
+        switch (type) {
+            case "chat" -> startChat(state, id, frame.path("question").asText(""),
+                    frame.path("conversationId").asText(null), frame.path("route").asText(null));
+            case "cancel" -> cancel(state, id);
+            default -> send(state, id, "error", Map.of("message", "Unknown frame type " + type));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        SessionState state = (SessionState) session.getAttributes().get(STATE);
+        if (state != null) {
+            state.expiry.dispose();
+            state.streams.values().forEach(Disposable::dispose);
+            state.streams.clear();
+        }
+    }
+
+    private void authenticate(SessionState state, String token) {
+        Jwt jwt;
+        try {
+            jwt = jwtDecoder.decode(token);
+        } catch (JwtException e) {
+            log.debug("WebSocket authentication failed: {}", e.getMessage());
+            send(state, null, "error", Map.of("message", "Invalid token"));
+            return;
+        }
+        if (state.username != null && !state.username.equals(jwt.getSubject())) {
+            send(state, null, "error", Map.of("message", "Token belongs to another user"));
+            return;
+        }
+
+        state.username = jwt.getSubject();
+        state.expiresAt = jwt.getExpiresAt();
+        if (state.expiresAt != null) {
+            long delay = Math.max(0, Duration.between(Instant.now(), state.expiresAt).toMillis());
+            state.expiry.update(Schedulers.parallel().schedule(() -> expire(state), delay, TimeUnit.MILLISECONDS));
+        }
+        send(state, null, "authenticated", Map.of());
+    }
+
+    private void expire(SessionState state) {
+        send(state, null, "error", Map.of("message", "Token expired"));
+        close(state, CloseStatus.POLICY_VIOLATION.withReason("Token expired"));
+    }
+
+    private void close(SessionState state, CloseStatus status) {
+        state.streams.values().forEach(Disposable::dispose);
+        try {
+            state.sender.close(status);
+        } catch (IOException e) {
+            log.debug("Could not close WebSocket session: {}", e.getMessage());
+        }
+    }
+
+    private void startChat(SessionState state, String id, String question, String conversationId, String route) {
+        if (id == null || question.isBlank()) {
+            send(state, id, "error", Map.of("message", "chat frames need an id and a question"));
+            return;
+        }
+        if (state.streams.size() >= maxStreamsPerSession || state.streams.containsKey(id)) {
+            send(state, id, "error", Map.of("message", "Too many streams or duplicate id"));
+            return;
+        }
+
+        // Register before subscribing so a stream that finishes right away still removes itself
+        Disposable.Swap slot = Disposables.swap();
+        state.streams.put(id, slot);
+        try {
+            slot.update(chatService.streamResponse(question, conversationId, state.username, route)
+                    // Fair backpressure only emits a frame once one is requested
+                    .bufferTimeout(frameMaxTokens, frameWindow, true)
+                    .map(tokens -> String.join("", tokens))
+                    // Socket writes block, keep them off the HTTP client's event loop
+                    .publishOn(Schedulers.boundedElastic(), 1)
+                    .doFinally(signal -> state.streams.remove(id, slot))
+                    .subscribeWith(new FrameSubscriber(state, id)));
+        } catch (GenerationRejectedException e) {
+            state.streams.remove(id, slot);
+            sendError(state, id, e);
+        }
+    }
+
+    // Admission can also reject from inside the stream, after the answer cache missed
+    private void sendError(SessionState state, String id, Throwable error) {
+        if (error instanceof GenerationRejectedException rejected) {
+            send(state, id, "error", Map.of("message", rejected.getReason(), "retryAfter", rejected.getRetryAfter().toSeconds()));
+        } else {
+            send(state, id, "error", Map.of("message", String.valueOf(error.getMessage())));
+        }
+    }
+
+    private void cancel(SessionState state, String id) {
+        Disposable stream = id != null ? state.streams.remove(id) : null;
+        if (stream != null) stream.dispose();
+    }
+
+    private void send(SessionState state, String id, String type, Map<String, Object> fields) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        if (id != null) frame.put("id", id);
+        frame.putAll(fields);
+        try {
+            state.sender.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+        } catch (SessionLimitExceededException e) {
+            log.debug("Closing session of a client that reads too slowly: {}", e.getMessage());
+            close(state, e.getStatus());
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping {} frame for closed or overflowing session: {}", type, e.getMessage());
+        }
+    }
+
+    // Requests the next frame only once the previous one was handed to the socket, so a
+    // slow client slows the stream down instead of piling frames up in memory
+    private final class FrameSubscriber extends BaseSubscriber<String> {
+        private final SessionState state;
+        private final String id;
+
+        private FrameSubscriber(SessionState state, String id) {
+            this.state = state;
+            this.id = id;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(String text) {
+            send(state, id, "token", Map.of("text", text));
+            request(1);
+        }
+
+        @Override
+        protected void hookOnError(Throwable error) {
+            sendError(state, id, error);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            send(state, id, "done", Map.of());
+        }
+    }
+
+    private static final class SessionState {
+        private final WebSocketSession sender;
+        private final Map<String, Disposable> streams = new ConcurrentHashMap<>();
+        private final Disposable.Swap expiry = Disposables.swap();
+        private volatile String username;
+        private volatile Instant expiresAt;
+
+        private SessionState(WebSocketSession sender) {
+            this.sender = sender;
+        }
+    }
+}
@@ -1,27 +1,40 @@
 package doo.dah.aui.artificial_unintelligence.controller;
 
+import doo.dah.aui.artificial_unintelligence.service.ChatMetrics;
+import doo.dah.aui.artificial_unintelligence.service.GenerationAdmissionController;
+import doo.dah.aui.artificial_unintelligence.service.StreamCancellationTracker;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
+import java.security.Principal;
+
 @RestController
 @RequestMapping("/ollama")
 @RequiredArgsConstructor
 public class OllamaChatController {
 
     private final OllamaChatModel chatModel;
+    private final GenerationAdmissionController admission;
+    private final StreamCancellationTracker cancellationTracker;
+    private final ChatMetrics chatMetrics;
 
-    @PostMapping
-    public Flux<ChatResponse> generateStream(@RequestBody String message) {
+    // Streamed as NDJSON so a client disconnect is noticed on the next write and cancels the model call
+    @PostMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ChatResponse> generateStream(@RequestBody String message, Principal principal) {
+        admission.rejectIfSaturated();
         Prompt prompt = new Prompt(new UserMessage(message));
-        return this.chatModel.stream(prompt);
+        String user = principal != null ? principal.getName() : "anonymous";
+        return admission.admit(user, () -> cancellationTracker.track("ollama",
+                chatMetrics.instrument("ollama", this.chatModel.stream(prompt))));
     }
 
 }
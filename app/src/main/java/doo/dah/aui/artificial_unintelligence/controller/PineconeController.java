@@ -1,23 +1,27 @@
 package doo.dah.aui.artificial_unintelligence.controller;
 
 import doo.dah.aui.artificial_unintelligence.service.DocumentProcessingService;
+import doo.dah.aui.artificial_unintelligence.service.IngestionRejectedException;
+import doo.dah.aui.artificial_unintelligence.service.PineconeService;
 import doo.dah.aui.artificial_unintelligence.service.WebCrawlerService;
+import doo.dah.aui.artificial_unintelligence.vectorstore.CachingVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
@@ -28,6 +32,8 @@ public class PineconeController {
     private final RestTemplate restTemplate;
     private final DocumentProcessingService documentProcessingService;
     private final WebCrawlerService siteCrawlerService;
+    private final CachingVectorStore cachingVectorStore;
+    private final PineconeService pineconeService;
 
     private static String getType(String contentType, String fileName) {
         if (contentType != null) {
@@ -157,22 +163,55 @@ public class PineconeController {
                     "message", String.format("Document successfully added from URL in %d chunks", chunks),
                     "chunks", chunks
             ));
+        } catch (IngestionRejectedException e) {
+            // Rendered as 503 with Retry-After
+            throw e;
         } catch (Exception e) {
             log.error("Error processing URL: {}", e.getMessage());
             return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
         }
     }
 
-    @GetMapping("search")
-    public List<Map<String, Object>> searchDocuments() {
-        List<Document> results = this.vectorStore.similaritySearch(SearchRequest.builder().query("Smart Home").topK(5).build());
-        return Objects.requireNonNull(results).stream()
-                .map(doc -> Map.of(
-                        "id", doc.getId(),
-                        "content", Objects.requireNonNull(doc.getText()),
-                        "metadata", doc.getMetadata()
-                ))
-                .collect(Collectors.toList());
+    @GetMapping(value = "search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Map<String, Object>>> searchDocuments(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int topK,
+            @RequestParam(required = false) String filter,
+            @RequestParam(defaultValue = "0.0") double threshold,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean includeContent) {
+        PineconeService.SearchPage page;
+        long start = System.nanoTime();
+        try {
+            page = pineconeService.searchPage(query, topK, filter, threshold, decodeCursor(cursor));
+        } catch (RuntimeException e) {
+            log.warn("Invalid search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Flux.just(Map.<String, Object>of("error", String.valueOf(e.getMessage()))));
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("Server-Timing", "search;dur=" + millis);
+        if (page.nextOffset() != null) {
+            response.header("X-Next-Cursor", encodeCursor(page.nextOffset()));
+        }
+        return response.body(Flux.fromIterable(page.documents())
+                .map(doc -> pineconeService.toResult(doc, includeContent)));
+    }
+
+    private static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+        return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+    }
+
+    private static String encodeCursor(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @GetMapping("cache/stats")
+    public Map<String, Object> cacheStats() {
+        return cachingVectorStore.stats();
     }
 
     @DeleteMapping("delete")
@@ -180,4 +219,28 @@ public class PineconeController {
         vectorStore.delete(Collections.singletonList(id));
         return ResponseEntity.noContent().build();
     }
+
+    @PostMapping("delete/batch")
+    public ResponseEntity<Map<String, Object>> deleteDocuments(@RequestBody Map<String, List<String>> payload) {
+        List<String> ids = payload.get("ids");
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ids are required"));
+        }
+        int deleted = pineconeService.deleteDocuments(ids);
+        return ResponseEntity.ok(Map.of("deleted", deleted));
+    }
+
+    @DeleteMapping("delete/by-filter")
+    public ResponseEntity<Map<String, Object>> deleteDocumentsMatching(
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String tag,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        if (source == null && title == null && tag == null && from == null && to == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At least one filter is required"));
+        }
+        int deleted = pineconeService.deleteDocumentsMatching(source, title, tag, from, to);
+        return ResponseEntity.ok(Map.of("deleted", deleted));
+    }
 }
\ No newline at end of file
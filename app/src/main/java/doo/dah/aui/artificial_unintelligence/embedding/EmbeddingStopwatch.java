@@ -0,0 +1,55 @@
+package doo.dah.aui.artificial_unintelligence.embedding;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures how much of some work was spent waiting for embeddings. Embeddings are made deep
+ * inside the vector stores, so {@link MicroBatchingEmbeddingModel} reports every call into
+ * the stopwatch running on the calling thread; callers subtract it to time the rest.
+ * <p>
+ * A stopwatch belongs to the thread that runs it. Nested stopwatches also count towards the
+ * enclosing one.
+ */
+public final class EmbeddingStopwatch {
+    private static final ThreadLocal<EmbeddingStopwatch> CURRENT = new ThreadLocal<>();
+
+    private long nanos;
+
+    /**
+     * Add the time spent embedding on this thread to the running stopwatch, if any
+     */
+    static void record(long elapsedNanos) {
+        EmbeddingStopwatch current = CURRENT.get();
+        if (current != null) current.nanos += elapsedNanos;
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T call(Supplier<T> work) {
+        EmbeddingStopwatch outer = CURRENT.get();
+        long before = nanos;
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+                outer.nanos += nanos - before;
+            }
+        }
+    }
+
+    /**
+     * Embedding time measured so far
+     */
+    public long nanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,165 @@
+package doo.dah.aui.artificial_unintelligence.embedding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EmbeddingModel} decorator that merges concurrent single-text embeddings, such as
+ * the question embedded for every retrieval, into one call to the delegate.
+ * <p>
+ * The first text to arrive opens a batch; the batch is sent when {@code window} has passed
+ * or {@code maxBatchSize} texts have joined, whichever comes first. Identical texts in a
+ * batch are embedded once. Callers block until their vector is back, so at low traffic a
+ * single embedding waits at most one window.
+ * <p>
+ * Calls that already carry a list of texts, like ingestion, go straight to the delegate.
+ * Either way the time the caller waited is reported to its {@link EmbeddingStopwatch}.
+ */
+@Slf4j
+public class MicroBatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+    private final EmbeddingModel delegate;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService senders;
+
+    private final DistributionSummary batchSizes;
+    private final Timer batchWait;
+
+    // Guarded by this
+    private Map<String, CompletableFuture<float[]>> pending = new LinkedHashMap<>();
+    private long batchOpenedAt;
+
+    public MicroBatchingEmbeddingModel(EmbeddingModel delegate, Duration window, int maxBatchSize,
+                                       MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedding-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The delegate call blocks on HTTP, one virtual thread per batch keeps batches independent
+        this.senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("embedding-batch-", 0).factory());
+
+        this.batchSizes = DistributionSummary.builder("embedding.batch.size")
+                .description("Texts sent per batched embedding call")
+                .register(meterRegistry);
+        this.batchWait = Timer.builder("embedding.batch.wait")
+                .description("Time a batch stayed open collecting texts")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        long started = System.nanoTime();
+        try {
+            return embedBatched(text);
+        } finally {
+            EmbeddingStopwatch.record(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        long started = System.nanoTime();
+        try {
+            return delegate.call(request);
+        } finally {
+            EmbeddingStopwatch.record(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        senders.shutdown();
+    }
+
+    private float[] embedBatched(String text) {
+        CompletableFuture<float[]> result;
+        Map<String, CompletableFuture<float[]>> full = null;
+        synchronized (this) {
+            result = pending.get(text);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                pending.put(text, result);
+                if (pending.size() == 1) {
+                    batchOpenedAt = System.nanoTime();
+                    Map<String, CompletableFuture<float[]>> batch = pending;
+                    timer.schedule(() -> flush(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                if (pending.size() >= maxBatchSize) {
+                    full = takePending();
+                }
+            }
+        }
+        // A full batch is sent from the caller that filled it
+        if (full != null) send(full);
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Timer side: only send the batch if it has not already been sent for being full
+    private void flush(Map<String, CompletableFuture<float[]>> batch) {
+        synchronized (this) {
+            if (pending != batch) return;
+            takePending();
+        }
+        senders.execute(() -> send(batch));
+    }
+
+    private Map<String, CompletableFuture<float[]>> takePending() {
+        Map<String, CompletableFuture<float[]>> batch = pending;
+        batchWait.record(System.nanoTime() - batchOpenedAt, TimeUnit.NANOSECONDS);
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void send(Map<String, CompletableFuture<float[]>> batch) {
+        List<String> texts = new ArrayList<>(batch.keySet());
+        batchSizes.record(texts.size());
+        try {
+            List<float[]> embeddings = delegate.embed(texts);
+            for (int i = 0; i < texts.size(); i++) {
+                batch.get(texts.get(i)).complete(embeddings.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Batched embedding of {} texts failed: {}", texts.size(), e.getMessage());
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
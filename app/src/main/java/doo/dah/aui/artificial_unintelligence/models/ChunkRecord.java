@@ -0,0 +1,43 @@
+package doo.dah.aui.artificial_unintelligence.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Local record of a chunk stored in the vector store, so chunks can be found by their
+ * metadata without scanning the remote index.
+ */
+@Entity
+@Table(name = "vector_chunks", indexes = {
+        @Index(name = "idx_vector_chunks_document_id", columnList = "documentId"),
+        @Index(name = "idx_vector_chunks_source", columnList = "source"),
+        @Index(name = "idx_vector_chunks_title", columnList = "title"),
+        @Index(name = "idx_vector_chunks_ingested_at", columnList = "ingestedAt")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkRecord {
+
+    @Id
+    private String id;
+
+    // Catalog entry of the document the chunk belongs to, null for uncatalogued chunks
+    private String documentId;
+
+    private String source;
+
+    private String title;
+
+    // Comma delimited with leading and trailing commas (",merch,parade,") so a tag can be matched with LIKE
+    private String tags;
+
+    @Column(nullable = false)
+    private Instant ingestedAt;
+}
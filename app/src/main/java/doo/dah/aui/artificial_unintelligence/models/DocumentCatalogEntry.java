@@ -0,0 +1,37 @@
+package doo.dah.aui.artificial_unintelligence.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Per-document metadata stored once locally instead of on every vector chunk
+ */
+@Entity
+@Table(name = "document_catalog", indexes = {
+        @Index(name = "idx_document_catalog_source", columnList = "source")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentCatalogEntry {
+
+    @Id
+    private String id;
+
+    private String title;
+
+    private String source;
+
+    // Full metadata map as JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String metadata;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
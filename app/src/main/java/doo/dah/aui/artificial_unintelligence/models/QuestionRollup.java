@@ -0,0 +1,44 @@
+package doo.dah.aui.artificial_unintelligence.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Question counts and totals per hour or day, updated as questions are logged so reports
+ * never have to scan {@code user_questions}.
+ */
+@Entity
+@Table(name = "question_rollups", indexes = {
+        @Index(name = "idx_question_rollups_granularity_bucket", columnList = "granularity, bucketStart")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionRollup {
+
+    // <granularity>|<bucketStart>
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String granularity;
+
+    @Column(nullable = false)
+    private Instant bucketStart;
+
+    private long questions;
+
+    private long answerLength;
+
+    private long promptTokens;
+
+    private long completionTokens;
+
+    private long latencyMs;
+}
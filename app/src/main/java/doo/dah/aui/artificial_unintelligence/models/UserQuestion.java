@@ -9,7 +9,10 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Entity
-@Table(name = "user_questions")
+@Table(name = "user_questions", indexes = {
+        @Index(name = "idx_user_questions_username_timestamp", columnList = "username, timestamp"),
+        @Index(name = "idx_user_questions_timestamp", columnList = "timestamp")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -23,9 +26,24 @@ public class UserQuestion {
     @Column(nullable = false)
     private String username;
 
+    private String conversationId;
+
+    // Only the text the user typed, not the rendered prompt
     @Column(nullable = false, columnDefinition = "TEXT")
     private String question;
 
+    private Integer answerLength;
+
+    private Long promptTokens;
+
+    private Long completionTokens;
+
+    private Long latencyMs;
+
+    // Comma separated ids of the chunks that were put into the prompt
+    @Column(columnDefinition = "TEXT")
+    private String documentIds;
+
     @Column(nullable = false)
     private Instant timestamp;
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package doo.dah.aui.artificial_unintelligence.repos;
+
+import doo.dah.aui.artificial_unintelligence.models.ChatMessageRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessageRecord, Long> {
+
+    List<ChatMessageRecord> findByConversationIdOrderByIdDesc(String conversationId, Pageable pageable);
+
+    @Transactional
+    void deleteByConversationId(String conversationId);
+}
@@ -0,0 +1,36 @@
+package doo.dah.aui.artificial_unintelligence.repos;
+
+import doo.dah.aui.artificial_unintelligence.models.ChunkRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChunkRecordRepository extends JpaRepository<ChunkRecord, String> {
+
+    @Query("""
+            SELECT c.id FROM ChunkRecord c
+            WHERE (:source IS NULL OR c.source = :source)
+              AND (:title IS NULL OR c.title = :title)
+              AND (:tag IS NULL OR c.tags LIKE CONCAT('%,', :tag, ',%'))
+              AND (:from IS NULL OR c.ingestedAt >= :from)
+              AND (:to IS NULL OR c.ingestedAt <= :to)
+            """)
+    List<String> findIds(@Param("source") String source,
+                         @Param("title") String title,
+                         @Param("tag") String tag,
+                         @Param("from") Instant from,
+                         @Param("to") Instant to);
+
+    @Query("SELECT DISTINCT c.documentId FROM ChunkRecord c WHERE c.id IN :ids AND c.documentId IS NOT NULL")
+    List<String> findDocumentIds(@Param("ids") Collection<String> ids);
+
+    // The subset of the given documents that still has chunks
+    @Query("SELECT DISTINCT c.documentId FROM ChunkRecord c WHERE c.documentId IN :documentIds")
+    List<String> findReferencedDocumentIds(@Param("documentIds") Collection<String> documentIds);
+}
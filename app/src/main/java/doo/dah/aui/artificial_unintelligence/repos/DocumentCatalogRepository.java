@@ -0,0 +1,9 @@
+package doo.dah.aui.artificial_unintelligence.repos;
+
+import doo.dah.aui.artificial_unintelligence.models.DocumentCatalogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentCatalogRepository extends JpaRepository<DocumentCatalogEntry, String> {
+}
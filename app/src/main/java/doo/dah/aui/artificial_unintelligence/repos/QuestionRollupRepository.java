@@ -0,0 +1,15 @@
+package doo.dah.aui.artificial_unintelligence.repos;
+
+import doo.dah.aui.artificial_unintelligence.models.QuestionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface QuestionRollupRepository extends JpaRepository<QuestionRollup, String> {
+
+    List<QuestionRollup> findByGranularityAndBucketStartBetweenOrderByBucketStart(String granularity,
+                                                                                   Instant from, Instant to);
+}
@@ -1,6 +1,7 @@
 package doo.dah.aui.artificial_unintelligence.repos;
 
 import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -13,4 +14,11 @@ public interface UserQuestionRepository extends JpaRepository<UserQuestion, Long
     List<UserQuestion> findByUsername(String username);
 
     List<UserQuestion> findByTimestampBetween(Instant start, Instant end);
+
+    List<UserQuestion> findByTimestampBeforeOrderByIdAsc(Instant cutoff, Pageable pageable);
+
+    List<UserQuestion> findByTimestampBetweenOrderByTimestampDesc(Instant start, Instant end, Pageable pageable);
+
+    List<UserQuestion> findByUsernameAndTimestampBetweenOrderByTimestampDesc(String username, Instant start,
+                                                                             Instant end, Pageable pageable);
 }
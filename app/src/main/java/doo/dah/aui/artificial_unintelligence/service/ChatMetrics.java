@@ -0,0 +1,132 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+
+/**
+ * Latency and throughput of streamed model responses, tagged by model:
+ * <ul>
+ *     <li>{@code chat.time.to.first.token} until the first chunk with text</li>
+ *     <li>{@code chat.stream.duration} for the whole stream, by outcome</li>
+ *     <li>{@code chat.tokens.per.second} from the first token to the end of a completed stream</li>
+ *     <li>{@code chat.prompt.tokens} and {@code chat.completion.tokens} as reported by the model</li>
+ * </ul>
+ */
+@Service
+public class ChatMetrics {
+    public static final String FIRST_TOKEN_TIMER = "chat.time.to.first.token";
+
+    private final MeterRegistry meterRegistry;
+    private final String defaultModel;
+
+    public ChatMetrics(MeterRegistry meterRegistry,
+                       @Value("${spring.ai.ollama.chat.options.model:unknown}") String defaultModel) {
+        this.meterRegistry = meterRegistry;
+        this.defaultModel = defaultModel;
+    }
+
+    /**
+     * @param endpoint tag identifying where the stream is served from
+     */
+    public Flux<ChatResponse> instrument(String endpoint, Flux<ChatResponse> responses) {
+        return Flux.defer(() -> {
+            StreamStats stats = new StreamStats(System.nanoTime());
+            return responses
+                    .doOnNext(response -> onResponse(endpoint, stats, response))
+                    .doFinally(signal -> onFinish(endpoint, stats, signal));
+        });
+    }
+
+    private void onResponse(String endpoint, StreamStats stats, ChatResponse response) {
+        String model = response.getMetadata().getModel();
+        if (model != null && !model.isBlank()) stats.model = model;
+
+        Usage usage = response.getMetadata().getUsage();
+        if (usage != null) {
+            Number prompt = usage.getPromptTokens();
+            Number total = usage.getTotalTokens();
+            if (prompt != null && prompt.longValue() > 0) stats.promptTokens = prompt.longValue();
+            if (total != null && prompt != null && total.longValue() > prompt.longValue()) {
+                stats.completionTokens = total.longValue() - prompt.longValue();
+            }
+        }
+
+        boolean hasText = response.getResult() != null && response.getResult().getOutput() != null
+                && response.getResult().getOutput().getText() != null
+                && !response.getResult().getOutput().getText().isEmpty();
+        if (!hasText) return;
+
+        stats.chunks++;
+        if (stats.firstTokenAt == 0) {
+            stats.firstTokenAt = System.nanoTime();
+            Timer.builder(FIRST_TOKEN_TIMER)
+                    .description("Time from starting a generation to its first token")
+                    .tags("model", stats.model(defaultModel), "endpoint", endpoint)
+                    // The ingestion bulkhead backs off on this p95
+                    .publishPercentiles(0.95)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(stats.firstTokenAt - stats.startedAt));
+        }
+    }
+
+    private void onFinish(String endpoint, StreamStats stats, SignalType signal) {
+        long now = System.nanoTime();
+        String model = stats.model(defaultModel);
+        String outcome = switch (signal) {
+            case ON_COMPLETE -> "completed";
+            case ON_ERROR -> "error";
+            default -> "cancelled";
+        };
+
+        Timer.builder("chat.stream.duration")
+                .tags("model", model, "endpoint", endpoint, "outcome", outcome)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(now - stats.startedAt));
+
+        if (signal != SignalType.ON_COMPLETE) return;
+
+        if (stats.promptTokens > 0) {
+            summary("chat.prompt.tokens", model, endpoint).record(stats.promptTokens);
+        }
+        // Ollama streams roughly one token per chunk, use that when no usage was reported
+        long completionTokens = stats.completionTokens > 0 ? stats.completionTokens : stats.chunks;
+        summary("chat.completion.tokens", model, endpoint).record(completionTokens);
+
+        if (stats.firstTokenAt > 0 && now > stats.firstTokenAt) {
+            double seconds = (now - stats.firstTokenAt) / 1e9;
+            summary("chat.tokens.per.second", model, endpoint).record(completionTokens / seconds);
+        }
+    }
+
+    private DistributionSummary summary(String name, String model, String endpoint) {
+        return DistributionSummary.builder(name)
+                .tags("model", model, "endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    private static final class StreamStats {
+        private final long startedAt;
+        private volatile long firstTokenAt;
+        private volatile long chunks;
+        private volatile long promptTokens;
+        private volatile long completionTokens;
+        private volatile String model;
+
+        private StreamStats(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        private String model(String fallback) {
+            return model != null ? model : fallback;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical chat generations. The first caller for a key
+ * starts the upstream generation; concurrent callers with the same key share it. Tokens
+ * already emitted are replayed to late joiners, and the upstream is only cancelled once
+ * the last subscriber has gone.
+ */
+@Slf4j
+@Service
+public class ChatRequestCoalescer {
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public ChatRequestCoalescer(MeterRegistry meterRegistry) {
+        this.leaders = meterRegistry.counter("chat.coalesced.requests", "role", "leader");
+        this.followers = meterRegistry.counter("chat.coalesced.requests", "role", "follower");
+        meterRegistry.gaugeMapSize("chat.coalesced.inflight", Tags.empty(), inFlight);
+    }
+
+    /**
+     * Join the generation for the given key, starting it if none is in flight
+     *
+     * @param key      identifies identical requests (normalized prompt and context)
+     * @param ownerId  identifies the caller that would own a new flight, e.g. its conversation
+     * @param upstream starts the actual generation, only called for the leader
+     * @return the shared tokens, and whether this caller started the generation
+     */
+    public Flight join(String key, String ownerId, Supplier<Flux<String>> upstream) {
+        AtomicReference<InFlight> created = new AtomicReference<>();
+        InFlight flight = inFlight.computeIfAbsent(key, k -> {
+            AtomicReference<InFlight> self = new AtomicReference<>();
+            Flux<String> shared = Flux.defer(upstream)
+                    .doFinally(signal -> inFlight.remove(k, self.get()))
+                    .replay()
+                    .refCount(1);
+            self.set(new InFlight(shared, ownerId));
+            created.set(self.get());
+            return self.get();
+        });
+
+        boolean leader = created.get() == flight;
+        if (leader) {
+            leaders.increment();
+        } else {
+            followers.increment();
+            log.debug("Coalesced request onto in-flight generation owned by {}", flight.ownerId());
+        }
+        return new Flight(flight.tokens(), flight.ownerId(), leader);
+    }
+
+    /**
+     * @param leader true for the caller whose request started the generation, a concurrent
+     *               duplicate from the same owner is a follower too
+     */
+    public record Flight(Flux<String> tokens, String ownerId, boolean leader) {
+    }
+
+    private record InFlight(Flux<String> tokens, String ownerId) {
+    }
+}
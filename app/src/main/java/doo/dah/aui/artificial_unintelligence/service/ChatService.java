@@ -1,21 +1,233 @@
 package doo.dah.aui.artificial_unintelligence.service;
 
+import doo.dah.aui.artificial_unintelligence.advisors.ModelRoutingAdvisor;
+import doo.dah.aui.artificial_unintelligence.advisors.SQLStorageAdvisor;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ChatService {
     private final ChatClient chatClient;
+    private final SemanticAnswerCache answerCache;
+    private final ChatRequestCoalescer coalescer;
+    private final ChatMemory chatMemory;
+    private final GenerationAdmissionController admission;
+    private final StreamCancellationTracker cancellationTracker;
+    private final ChatMetrics chatMetrics;
+    private final QuestionLogWriter questionLogWriter;
 
-    public ChatService(ChatClient chatClient) {
+    public ChatService(ChatClient chatClient, SemanticAnswerCache answerCache,
+                       ChatRequestCoalescer coalescer, ChatMemory chatMemory,
+                       GenerationAdmissionController admission, StreamCancellationTracker cancellationTracker,
+                       ChatMetrics chatMetrics, QuestionLogWriter questionLogWriter) {
         this.chatClient = chatClient;
+        this.answerCache = answerCache;
+        this.coalescer = coalescer;
+        this.chatMemory = chatMemory;
+        this.admission = admission;
+        this.cancellationTracker = cancellationTracker;
+        this.chatMetrics = chatMetrics;
+        this.questionLogWriter = questionLogWriter;
     }
 
     public Flux<String> streamResponse(String question) {
-        return chatClient.prompt()
-                .user(question)
+        return streamResponse(question, null);
+    }
+
+    /**
+     * Stream an answer within one of the current user's conversations
+     *
+     * @param question       the user's question
+     * @param conversationId client chosen conversation id, null for the user's default conversation
+     */
+    public Flux<String> streamResponse(String question, String conversationId) {
+        // Resolve the user here, the stream may be subscribed on another thread
+        return streamResponse(question, conversationId, getCurrentUsername());
+    }
+
+    /**
+     * Stream an answer for an already authenticated user, for transports without a
+     * security context on the calling thread
+     *
+     * @throws GenerationRejectedException when the generation queue is full
+     */
+    public Flux<String> streamResponse(String question, String conversationId, String username) {
+        return streamResponse(question, conversationId, username, null);
+    }
+
+    /**
+     * @param route forces the {@code small} or {@code large} model, null lets the router decide
+     * @throws GenerationRejectedException when the generation queue is full
+     */
+    public Flux<String> streamResponse(String question, String conversationId, String username, String route) {
+        ChatTurn turn = new ChatTurn(username, memoryKey(username, conversationId), question, route);
+        if (!answerCache.isEnabled()) {
+            // Fail with 429 while the response can still carry a status
+            admission.rejectIfSaturated();
+            return generate(turn);
+        }
+
+        // Cache hits need no generation slot, so admission is only checked on a miss; the
+        // error still arrives before the first token and maps to a 429
+        return Mono.fromCallable(() -> probeCache(turn))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(probe -> {
+                    if (probe.answer() != null) {
+                        return replayCachedAnswer(turn, probe.answer());
+                    }
+                    admission.rejectIfSaturated();
+                    return probe.embedding() != null ? generateAndCache(turn, probe.embedding()) : generate(turn);
+                });
+    }
+
+    // Only the first turn of a conversation is answered from or stored in the shared cache,
+    // later turns may refer to history the cached answer knows nothing about. Blocking.
+    private CacheProbe probeCache(ChatTurn turn) {
+        if (!chatMemory.get(turn.memoryKey(), 1).isEmpty()) {
+            return new CacheProbe(null, null);
+        }
+        float[] embedding = answerCache.embed(turn.question());
+        return new CacheProbe(embedding, answerCache.lookup(embedding, turn.route()).orElse(null));
+    }
+
+    // The advisors do not run for a cached answer, record the exchange in memory and the question log here
+    private Flux<String> replayCachedAnswer(ChatTurn turn, List<String> chunks) {
+        return Flux.defer(() -> {
+            long startedAt = System.nanoTime();
+            Instant timestamp = Instant.now();
+            return Flux.fromIterable(chunks)
+                    .doOnComplete(() -> recordExchange(turn, String.join("", chunks), startedAt, timestamp));
+        });
+    }
+
+    // Stands in for the memory and SQL advisors on answers that did not go through them
+    private void recordExchange(ChatTurn turn, String answer, long startedAt, Instant timestamp) {
+        chatMemory.add(turn.memoryKey(), List.of(new UserMessage(turn.question()), new AssistantMessage(answer)));
+        questionLogWriter.enqueue(UserQuestion.builder()
+                .username(turn.username())
+                .conversationId(turn.memoryKey().substring(turn.username().length() + 1))
+                .question(turn.question())
+                .answerLength(answer.length())
+                .latencyMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                .timestamp(timestamp)
+                .build());
+    }
+
+    private Flux<String> generateAndCache(ChatTurn turn, float[] embedding) {
+        return Flux.defer(() -> {
+            long generation = answerCache.generation();
+            List<String> chunks = new ArrayList<>();
+            return generate(turn)
+                    .doOnNext(chunks::add)
+                    .doOnComplete(() -> answerCache.put(turn.question(), turn.route(), embedding, chunks, generation));
+        });
+    }
+
+    // Identical prompts with identical history and route share one upstream generation
+    private Flux<String> generate(ChatTurn turn) {
+        return Mono.fromCallable(() -> coalescingKey(turn))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(key -> {
+                    ChatRequestCoalescer.Flight flight = coalescer.join(key, turn.memoryKey(),
+                            () -> admission.admit(turn.username(),
+                                    () -> cancellationTracker.track("chat", callModel(turn))));
+                    if (flight.leader()) {
+                        return flight.tokens();
+                    }
+                    return rememberSharedAnswer(turn, flight.tokens());
+                });
+    }
+
+    // The memory and SQL advisors only ran for the leader, record the exchange for followers too
+    private Flux<String> rememberSharedAnswer(ChatTurn turn, Flux<String> tokens) {
+        return Flux.defer(() -> {
+            long startedAt = System.nanoTime();
+            Instant timestamp = Instant.now();
+            StringBuilder answer = new StringBuilder();
+            return tokens
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> recordExchange(turn, answer.toString(), startedAt, timestamp));
+        });
+    }
+
+    // A collision would hand one conversation's answer to another, so the history is hashed
+    // with SHA-256 rather than String.hashCode
+    private String coalescingKey(ChatTurn turn) {
+        MessageDigest digest = sha256();
+        for (Message message : chatMemory.get(turn.memoryKey(), Integer.MAX_VALUE)) {
+            digest.update((message.getMessageType() + ":" + message.getText() + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+        return normalize(turn.question()) + "|" + HexFormat.of().formatHex(digest.digest())
+                + "|" + (turn.route() == null ? "" : turn.route());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String normalize(String question) {
+        return question.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private Flux<String> callModel(ChatTurn turn) {
+        Flux<ChatResponse> responses = chatClient.prompt()
+                .user(turn.question())
+                .advisors(a -> {
+                    a.param(SQLStorageAdvisor.USERNAME_KEY, turn.username())
+                            .param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, turn.memoryKey())
+                            .param(ModelRoutingAdvisor.QUESTION_KEY, turn.question());
+                    if (turn.route() != null) a.param(ModelRoutingAdvisor.ROUTE_KEY, turn.route());
+                })
                 .stream()
-                .content();
+                .chatResponse();
+        return chatMetrics.instrument("chat", responses)
+                .mapNotNull(response -> response.getResult() != null && response.getResult().getOutput() != null
+                        ? response.getResult().getOutput().getText() : null);
+    }
+
+    // Memory is keyed by user so one user can never read another user's conversation
+    private static String memoryKey(String username, String conversationId) {
+        return username + ":" + (conversationId == null || conversationId.isBlank() ? "default" : conversationId);
+    }
+
+    private String getCurrentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            return authentication.getName();
+        }
+        return "anonymous";
+    }
+
+    private record ChatTurn(String username, String memoryKey, String question, String route) {
+    }
+
+    // embedding is null when the turn may not use the cache, answer is null on a miss
+    private record CacheProbe(float[] embedding, List<String> answer) {
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.ChunkRecord;
+import doo.dah.aui.artificial_unintelligence.repos.ChunkRecordRepository;
+import doo.dah.aui.artificial_unintelligence.vectorstore.KnowledgeBaseChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the local {@link ChunkRecord} index in sync with the vector store and answers
+ * "which chunk ids match this metadata" without touching the remote index.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkIndexService {
+    // Metadata keys the ingestion paths use for the time a document entered the knowledge base
+    private static final List<String> DATE_KEYS = List.of("uploadDate", "crawlDate", "submissionDate");
+
+    private final ChunkRecordRepository chunkRecordRepository;
+    private final DocumentCatalogService documentCatalogService;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+
+    @EventListener
+    public void onKnowledgeBaseChanged(KnowledgeBaseChangedEvent event) {
+        if (!event.addedDocuments().isEmpty()) {
+            List<ChunkRecord> records = event.addedDocuments().stream().map(this::toRecord).toList();
+            sqliteWriteExecutor.execute(() -> chunkRecordRepository.saveAll(records));
+        }
+        if (!event.deletedIds().isEmpty()) {
+            sqliteWriteExecutor.execute(() -> delete(event.deletedIds()));
+        }
+    }
+
+    // Catalog entries go with the last chunk of their document
+    private void delete(List<String> ids) {
+        Set<String> documentIds = new HashSet<>(chunkRecordRepository.findDocumentIds(ids));
+        chunkRecordRepository.deleteAllByIdInBatch(ids);
+        if (documentIds.isEmpty()) return;
+
+        documentIds.removeAll(chunkRecordRepository.findReferencedDocumentIds(documentIds));
+        documentCatalogService.remove(documentIds);
+    }
+
+    /**
+     * Find the ids of all chunks matching every given (non-null) criterion
+     */
+    public List<String> findIds(String source, String title, String tag, Instant from, Instant to) {
+        return chunkRecordRepository.findIds(source, title, tag, from, to);
+    }
+
+    private ChunkRecord toRecord(Document document) {
+        Map<String, Object> metadata = documentCatalogService.fullMetadata(document);
+        Object source = metadata.getOrDefault("source", metadata.get("name"));
+        Object title = metadata.get("title");
+
+        Object documentId = document.getMetadata().get(DocumentCatalogService.DOCUMENT_ID_KEY);
+
+        return ChunkRecord.builder()
+                .id(document.getId())
+                .documentId(documentId != null ? documentId.toString() : null)
+                .source(source != null ? source.toString() : null)
+                .title(title != null ? title.toString() : null)
+                .tags(joinTags(metadata.get("tags")))
+                .ingestedAt(ingestedAt(metadata))
+                .build();
+    }
+
+    private static String joinTags(Object tags) {
+        if (!(tags instanceof Collection<?> values) || values.isEmpty()) {
+            return null;
+        }
+        StringBuilder joined = new StringBuilder(",");
+        for (Object value : values) {
+            joined.append(value).append(',');
+        }
+        return joined.toString();
+    }
+
+    private static Instant ingestedAt(Map<String, Object> metadata) {
+        for (String key : DATE_KEYS) {
+            if (metadata.get(key) instanceof Number millis) {
+                return Instant.ofEpochMilli(millis.longValue());
+            }
+        }
+        return Instant.now();
+    }
+}
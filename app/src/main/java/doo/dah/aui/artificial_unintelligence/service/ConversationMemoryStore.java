@@ -0,0 +1,238 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import doo.dah.aui.artificial_unintelligence.models.ChatMessageRecord;
+import doo.dah.aui.artificial_unintelligence.repos.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link ChatMemory} that keeps a bounded window of recent messages per conversation in
+ * memory and writes every message behind to SQLite.
+ * <p>
+ * Idle conversations are evicted (least recently used first, plus an idle timeout) and are
+ * loaded back lazily from the database the next time they are used, so memory stays flat
+ * no matter how many conversations the app has seen.
+ */
+@Slf4j
+@Service
+public class ConversationMemoryStore implements ChatMemory {
+    private final ChatMessageRepository chatMessageRepository;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+    private final Cache<String, Deque<Message>> conversations;
+    private final BlockingQueue<ChatMessageRecord> pendingWrites;
+    // Messages taken off the queue but not written yet, oldest first. Guarded by this.
+    private final List<ChatMessageRecord> unwritten = new ArrayList<>();
+    // One flush writes at a time; held during the write, which never holds this
+    private final Object flushLock = new Object();
+    private final int windowSize;
+    private final int writeQueueCapacity;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Counter droppedWrites;
+    // Guarded by this: the batch being written, still unwritten as far as loads are concerned
+    private List<ChatMessageRecord> inFlight = List.of();
+    private Duration currentBackoff = Duration.ZERO;
+    private long nextAttemptNanos = System.nanoTime();
+
+    public ConversationMemoryStore(ChatMessageRepository chatMessageRepository,
+                                   SqliteWriteExecutor sqliteWriteExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.chat.memory.window-size:20}") int windowSize,
+                                   @Value("${app.chat.memory.max-conversations:5000}") long maxConversations,
+                                   @Value("${app.chat.memory.idle-timeout:30m}") Duration idleTimeout,
+                                   @Value("${app.chat.memory.write-queue-capacity:10000}") int writeQueueCapacity,
+                                   @Value("${app.chat.memory.retry-backoff:1s}") Duration retryBackoff,
+                                   @Value("${app.chat.memory.max-retry-backoff:1m}") Duration maxRetryBackoff) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.sqliteWriteExecutor = sqliteWriteExecutor;
+        this.windowSize = windowSize;
+        this.writeQueueCapacity = writeQueueCapacity;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.droppedWrites = meterRegistry.counter("chat.memory.dropped.writes");
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.pendingWrites = new LinkedBlockingQueue<>(writeQueueCapacity);
+        meterRegistry.gaugeMapSize("chat.memory.conversations", Tags.empty(), conversations.asMap());
+        meterRegistry.gaugeCollectionSize("chat.memory.pending.writes", Tags.empty(), pendingWrites);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Deque<Message> window = window(conversationId);
+        synchronized (window) {
+            for (Message message : messages) {
+                window.addLast(message);
+                if (window.size() > windowSize) window.removeFirst();
+            }
+        }
+
+        Instant now = Instant.now();
+        for (Message message : messages) {
+            ChatMessageRecord record = ChatMessageRecord.builder()
+                    .conversationId(conversationId)
+                    .messageType(message.getMessageType().name())
+                    .content(Objects.requireNonNullElse(message.getText(), ""))
+                    .timestamp(now)
+                    .build();
+            if (!pendingWrites.offer(record)) {
+                // Writer is falling behind, flush rather than dropping history, but never
+                // block an event loop thread for it
+                if (Schedulers.isInNonBlockingThread()) {
+                    Schedulers.boundedElastic().schedule(() -> flushAndOffer(record));
+                } else {
+                    flushAndOffer(record);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        Deque<Message> window = window(conversationId);
+        synchronized (window) {
+            List<Message> messages = new ArrayList<>(window);
+            return messages.subList(Math.max(0, messages.size() - lastN), messages.size());
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        conversations.invalidate(conversationId);
+        // Unwritten messages of the conversation are dropped rather than written and deleted
+        // again. Waiting for a running flush keeps its batch from being written after the delete.
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingWrites.drainTo(unwritten);
+                unwritten.removeIf(record -> record.getConversationId().equals(conversationId));
+            }
+            sqliteWriteExecutor.execute(() -> chatMessageRepository.deleteByConversationId(conversationId));
+        }
+    }
+
+    /**
+     * Write queued messages. After a failed write the messages are kept and retried with
+     * exponential backoff; calls during the backoff only move the queue into the retry buffer.
+     * The batch is taken under the lock and written outside it, so loads and adds never wait
+     * for SQLite.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.memory.flush-interval:2s}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<ChatMessageRecord> batch;
+            synchronized (this) {
+                pendingWrites.drainTo(unwritten);
+                if (unwritten.size() > writeQueueCapacity) {
+                    int dropped = unwritten.size() - writeQueueCapacity;
+                    unwritten.subList(0, dropped).clear();
+                    droppedWrites.increment(dropped);
+                    log.error("Chat message writes keep failing, dropped the {} oldest unwritten messages", dropped);
+                }
+                if (unwritten.isEmpty() || System.nanoTime() - nextAttemptNanos < 0) return;
+                batch = List.copyOf(unwritten);
+                unwritten.clear();
+                inFlight = batch;
+            }
+
+            try {
+                sqliteWriteExecutor.execute(() -> chatMessageRepository.saveAll(batch));
+                synchronized (this) {
+                    inFlight = List.of();
+                    currentBackoff = Duration.ZERO;
+                }
+            } catch (Exception e) {
+                // Ids assigned before the rollback would turn the retry into a merge of rows that do not exist
+                batch.forEach(record -> record.setId(null));
+                synchronized (this) {
+                    inFlight = List.of();
+                    // Anything queued during the write is newer, the batch goes back in front of it
+                    unwritten.addAll(0, batch);
+                    currentBackoff = currentBackoff.isZero() ? retryBackoff : min(currentBackoff.multipliedBy(2), maxRetryBackoff);
+                    nextAttemptNanos = System.nanoTime() + currentBackoff.toNanos();
+                }
+                log.error("Failed to persist {} chat messages, retrying in {}: {}", batch.size(), currentBackoff, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        synchronized (this) {
+            nextAttemptNanos = System.nanoTime();
+        }
+        flush();
+    }
+
+    private void flushAndOffer(ChatMessageRecord record) {
+        flush();
+        pendingWrites.offer(record);
+    }
+
+    private Deque<Message> window(String conversationId) {
+        return conversations.get(conversationId, this::load);
+    }
+
+    // Runs inside the cache's compute, so it only reads. Messages not written yet are taken
+    // from the queue and the batch being written; holding the lock keeps a concurrent flush
+    // from moving them in between. A batch that commits while the database is read shows up
+    // twice, its rows are recognized by the ids the write assigned and only read once.
+    private Deque<Message> load(String conversationId) {
+        synchronized (this) {
+            List<ChatMessageRecord> newestFirst = chatMessageRepository
+                    .findByConversationIdOrderByIdDesc(conversationId, PageRequest.of(0, windowSize));
+
+            Deque<Message> window = new ArrayDeque<>(windowSize + 1);
+            Set<Long> storedIds = new HashSet<>();
+            for (ChatMessageRecord record : newestFirst) {
+                window.addFirst(toMessage(record));
+                storedIds.add(record.getId());
+            }
+            List<ChatMessageRecord> queued = new ArrayList<>(inFlight);
+            queued.addAll(unwritten);
+            queued.addAll(pendingWrites);
+            for (ChatMessageRecord record : queued) {
+                if (!record.getConversationId().equals(conversationId)) continue;
+                if (record.getId() != null && storedIds.contains(record.getId())) continue;
+                window.addLast(toMessage(record));
+                if (window.size() > windowSize) window.removeFirst();
+            }
+            return window;
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static Message toMessage(ChatMessageRecord record) {
+        return switch (MessageType.valueOf(record.getMessageType())) {
+            case USER -> new UserMessage(record.getContent());
+            case ASSISTANT -> new AssistantMessage(record.getContent());
+            default -> new SystemMessage(record.getContent());
+        };
+    }
+}
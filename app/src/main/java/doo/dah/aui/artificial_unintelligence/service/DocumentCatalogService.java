@@ -0,0 +1,182 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import doo.dah.aui.artificial_unintelligence.models.DocumentCatalogEntry;
+import doo.dah.aui.artificial_unintelligence.repos.DocumentCatalogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Local catalog of document level metadata. Vector chunks only carry the document id, the
+ * chunk ordinal and the fields used in filters; everything else is reattached from here
+ * when search results come back.
+ */
+@Slf4j
+@Service
+public class DocumentCatalogService {
+    public static final String DOCUMENT_ID_KEY = "documentId";
+    public static final String CHUNK_KEY = "chunk";
+
+    // Metadata that stays on every chunk because searches filter or shard on it
+    private static final Set<String> FILTERABLE_KEYS = Set.of("source", "title", "tags", "type");
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final DocumentCatalogRepository documentCatalogRepository;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Map<String, Object>> metadataCache;
+
+    public DocumentCatalogService(DocumentCatalogRepository documentCatalogRepository,
+                                  SqliteWriteExecutor sqliteWriteExecutor,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.catalog.cache-size:10000}") long cacheSize) {
+        this.documentCatalogRepository = documentCatalogRepository;
+        this.sqliteWriteExecutor = sqliteWriteExecutor;
+        this.objectMapper = objectMapper;
+        this.metadataCache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Store the full metadata of a document and return its catalog id
+     */
+    public String register(Map<String, Object> metadata) {
+        String id = UUID.randomUUID().toString();
+        Object title = metadata.get("title");
+        Object source = metadata.getOrDefault("source", metadata.get("name"));
+
+        DocumentCatalogEntry entry = DocumentCatalogEntry.builder()
+                .id(id)
+                .title(title != null ? title.toString() : null)
+                .source(source != null ? source.toString() : null)
+                .metadata(toJson(metadata))
+                .createdAt(Instant.now())
+                .build();
+        sqliteWriteExecutor.execute(() -> documentCatalogRepository.save(entry));
+        metadataCache.put(id, Map.copyOf(withoutNulls(metadata)));
+        return id;
+    }
+
+    /**
+     * Remove catalog entries, for documents whose last chunk was deleted or whose chunks
+     * could not be stored
+     */
+    public void remove(Collection<String> documentIds) {
+        if (documentIds.isEmpty()) return;
+        sqliteWriteExecutor.execute(() -> {
+            documentCatalogRepository.deleteAllByIdInBatch(documentIds);
+            metadataCache.invalidateAll(documentIds);
+        });
+        log.debug("Removed {} documents from the catalog", documentIds.size());
+    }
+
+    /**
+     * The compact metadata stored on each vector chunk of a catalogued document
+     */
+    public Map<String, Object> chunkMetadata(String documentId, Map<String, Object> metadata, int chunk) {
+        Map<String, Object> slim = new HashMap<>();
+        slim.put(DOCUMENT_ID_KEY, documentId);
+        slim.put(CHUNK_KEY, chunk);
+        for (String key : FILTERABLE_KEYS) {
+            if (metadata.get(key) != null) slim.put(key, metadata.get(key));
+        }
+        return slim;
+    }
+
+    /**
+     * Full metadata of a chunk: catalog metadata overlaid with the chunk's own fields.
+     * Chunks stored without a document id are returned as they are.
+     */
+    public Map<String, Object> fullMetadata(Document chunk) {
+        Object documentId = chunk.getMetadata().get(DOCUMENT_ID_KEY);
+        if (documentId == null) return chunk.getMetadata();
+
+        Map<String, Object> catalog = metadataCache.get(documentId.toString(), this::load);
+        return catalog != null ? merge(catalog, chunk.getMetadata()) : chunk.getMetadata();
+    }
+
+    /**
+     * Reattach catalog metadata to search results, loading missing entries in one query
+     */
+    public List<Document> hydrate(List<Document> chunks) {
+        Set<String> documentIds = chunks.stream()
+                .map(doc -> doc.getMetadata().get(DOCUMENT_ID_KEY))
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .collect(Collectors.toSet());
+        if (documentIds.isEmpty()) return chunks;
+
+        Map<String, Map<String, Object>> catalog = metadataCache.getAll(documentIds, this::loadAll);
+        return chunks.stream().map(doc -> {
+            Object documentId = doc.getMetadata().get(DOCUMENT_ID_KEY);
+            Map<String, Object> documentMetadata = documentId != null ? catalog.get(documentId.toString()) : null;
+            if (documentMetadata == null) return doc;
+            return Document.builder()
+                    .id(doc.getId())
+                    .text(doc.getText())
+                    .metadata(merge(documentMetadata, doc.getMetadata()))
+                    .score(doc.getScore())
+                    .build();
+        }).toList();
+    }
+
+    // Misses are not cached, a document registered after the lookup must still be found
+    private Map<String, Object> load(String documentId) {
+        return documentCatalogRepository.findById(documentId)
+                .map(entry -> fromJson(entry.getMetadata()))
+                .orElse(null);
+    }
+
+    private Map<String, Map<String, Object>> loadAll(Set<? extends String> documentIds) {
+        Map<String, Map<String, Object>> loaded = new HashMap<>();
+        for (DocumentCatalogEntry entry : documentCatalogRepository.findAllById(documentIds)) {
+            loaded.put(entry.getId(), fromJson(entry.getMetadata()));
+        }
+        return loaded;
+    }
+
+    private static Map<String, Object> merge(Map<String, Object> catalog, Map<String, Object> chunk) {
+        Map<String, Object> merged = new HashMap<>(catalog);
+        merged.putAll(chunk);
+        return merged;
+    }
+
+    private static Map<String, Object> withoutNulls(Map<String, Object> metadata) {
+        Map<String, Object> copy = new HashMap<>(metadata);
+        copy.values().removeIf(Objects::isNull);
+        return copy;
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Document metadata is not serializable", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        try {
+            return Map.copyOf(withoutNulls(objectMapper.readValue(json, METADATA_TYPE)));
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable catalog metadata: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+}
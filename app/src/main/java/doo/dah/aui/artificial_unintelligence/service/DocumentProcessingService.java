@@ -10,23 +10,30 @@ import org.apache.tika.sax.BodyContentHandler;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.stereotype.Service;
+import org.springframework.util.function.SingletonSupplier;
 import org.xml.sax.SAXException;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class DocumentProcessingService {
     private final VectorStore vectorStore;
-    private final Tika tika;
-    private final OverlappingTokenTextSplitter defaultSplitter;
+    private final DocumentCatalogService documentCatalogService;
+    private final IngestionBulkhead ingestionBulkhead;
+    private final IngestionMetrics ingestionMetrics;
+    // Tika loads every parser and detector on construction, only pay for it on the first upload
+    private final SingletonSupplier<Tika> tika = SingletonSupplier.of(Tika::new);
 
-    public DocumentProcessingService(VectorStore vectorStore) {
+    public DocumentProcessingService(VectorStore vectorStore, DocumentCatalogService documentCatalogService,
+                                     IngestionBulkhead ingestionBulkhead, IngestionMetrics ingestionMetrics) {
         this.vectorStore = vectorStore;
-        this.tika = new Tika();
-        this.defaultSplitter = createSplitter(new ProcessingConfig());
+        this.documentCatalogService = documentCatalogService;
+        this.ingestionBulkhead = ingestionBulkhead;
+        this.ingestionMetrics = ingestionMetrics;
     }
 
     // Create splitter from config
@@ -48,9 +55,34 @@ public class DocumentProcessingService {
 
     // Process text with custom config
     public int processDocumentWithConfig(String content, Map<String, Object> metadata, ProcessingConfig config) {
-        Document document = new Document(content, metadata);
-        List<Document> documents = createSplitter(config).split(List.of(document));
-        vectorStore.add(documents);
+        // Full metadata goes to the catalog once, the chunks only reference it
+        String documentId = documentCatalogService.register(metadata);
+        List<Document> chunks = ingestionMetrics.record("split",
+                () -> createSplitter(config).split(List.of(new Document(content))));
+
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            documents.add(Document.builder()
+                    .id(chunk.getId())
+                    .text(chunk.getText())
+                    .metadata(documentCatalogService.chunkMetadata(documentId, metadata, i + 1))
+                    .build());
+        }
+        // A document without stored chunks must not leave its catalog entry behind
+        if (documents.isEmpty()) {
+            documentCatalogService.remove(List.of(documentId));
+            return 0;
+        }
+        try {
+            ingestionBulkhead.store(vectorStore, documents);
+        } catch (PartialIngestionException e) {
+            // Chunks that could not be rolled back still point at the catalog entry
+            throw e;
+        } catch (RuntimeException e) {
+            documentCatalogService.remove(List.of(documentId));
+            throw e;
+        }
         return documents.size();
     }
 
@@ -69,6 +101,11 @@ public class DocumentProcessingService {
 
     // Extract text based on file type
     private String extractText(byte[] content, String fileType) throws IOException {
+        ingestionMetrics.recordBytes("extract", content.length);
+        return ingestionMetrics.record("extract", () -> extractTextByType(content, fileType));
+    }
+
+    private String extractTextByType(byte[] content, String fileType) throws IOException {
         switch (fileType.toLowerCase()) {
             case "pdf":
                 return extractTextWithTika(content, "Failed to extract text from PDF");
@@ -95,7 +132,7 @@ public class DocumentProcessingService {
 
     private String extractTextGeneric(byte[] content) throws IOException {
         try {
-            return tika.parseToString(new ByteArrayInputStream(content));
+            return tika.obtain().parseToString(new ByteArrayInputStream(content));
         } catch (TikaException e) {
             throw new IOException("Failed to extract text from document", e);
         }
@@ -0,0 +1,181 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many LLM generations run at once. Generations beyond the limit wait in a
+ * bounded queue that is served round-robin per user, so one user firing many requests
+ * cannot starve everybody else. When the queue is full new requests are rejected with
+ * {@link GenerationRejectedException} instead of slowing every admitted stream down.
+ */
+@Slf4j
+@Service
+public class GenerationAdmissionController {
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final Duration retryAfter;
+
+    // All guarded by this
+    private final Map<String, Deque<Ticket>> waitingByUser = new HashMap<>();
+    private final Deque<String> userRotation = new ArrayDeque<>();
+    private int active;
+    private int queued;
+
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public GenerationAdmissionController(MeterRegistry meterRegistry,
+                                         @Value("${app.chat.admission.max-concurrent:4}") int maxConcurrent,
+                                         @Value("${app.chat.admission.queue-capacity:32}") int queueCapacity,
+                                         @Value("${app.chat.admission.retry-after:5s}") Duration retryAfter) {
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        this.retryAfter = retryAfter;
+        this.queueWait = Timer.builder("chat.admission.queue.wait")
+                .description("Time generations spent waiting for a slot")
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("chat.admission.rejected");
+        meterRegistry.gauge("chat.admission.active", this, controller -> controller.active());
+        meterRegistry.gauge("chat.admission.queued", this, controller -> controller.queued());
+    }
+
+    /**
+     * Throw right away when a new generation could neither start nor queue, so callers can
+     * answer 429 before the response is committed. Admission itself happens in {@link #admit}.
+     */
+    public void rejectIfSaturated() {
+        synchronized (this) {
+            if (active < maxConcurrent || queued < queueCapacity) {
+                return;
+            }
+        }
+        rejected.increment();
+        throw new GenerationRejectedException(retryAfter);
+    }
+
+    /**
+     * Run the generation once a slot is free. The slot is held until the returned stream
+     * completes, fails or is cancelled; cancelling while queued just leaves the queue.
+     *
+     * @param user       the requesting user, the unit of fair scheduling
+     * @param generation starts the generation, called once a slot is granted
+     */
+    public <T> Flux<T> admit(String user, Supplier<Flux<T>> generation) {
+        return Flux.defer(() -> {
+            Ticket ticket = new Ticket(user, System.nanoTime());
+            return Mono.<Void>create(sink -> enqueue(ticket, sink))
+                    .thenMany(Flux.defer(generation))
+                    .doFinally(signal -> finish(ticket));
+        });
+    }
+
+    public synchronized int active() {
+        return active;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    private void enqueue(Ticket ticket, MonoSink<Void> sink) {
+        ticket.sink = sink;
+        synchronized (this) {
+            if (active < maxConcurrent && queued == 0) {
+                active++;
+                ticket.granted = true;
+            } else if (queued < queueCapacity) {
+                Deque<Ticket> waiting = waitingByUser.computeIfAbsent(ticket.user, user -> new ArrayDeque<>());
+                if (waiting.isEmpty()) userRotation.addLast(ticket.user);
+                waiting.addLast(ticket);
+                queued++;
+                return;
+            }
+        }
+
+        if (ticket.granted) {
+            queueWait.record(Duration.ZERO);
+            sink.success();
+        } else {
+            rejected.increment();
+            sink.error(new GenerationRejectedException(retryAfter));
+        }
+    }
+
+    private void finish(Ticket ticket) {
+        Ticket next;
+        synchronized (this) {
+            if (ticket.finished) return;
+            ticket.finished = true;
+            if (!ticket.granted) {
+                withdraw(ticket);
+                return;
+            }
+            // Hand the slot straight to the next waiting user instead of releasing it
+            next = pollNext();
+            if (next == null) {
+                active--;
+                return;
+            }
+            next.granted = true;
+        }
+
+        queueWait.record(Duration.ofNanos(System.nanoTime() - next.enqueuedAt));
+        next.sink.success();
+    }
+
+    // Caller holds the lock
+    private Ticket pollNext() {
+        String user = userRotation.pollFirst();
+        if (user == null) return null;
+
+        Deque<Ticket> waiting = waitingByUser.get(user);
+        Ticket next = waiting.pollFirst();
+        queued--;
+        if (waiting.isEmpty()) {
+            waitingByUser.remove(user);
+        } else {
+            userRotation.addLast(user);
+        }
+        return next;
+    }
+
+    // Caller holds the lock
+    private void withdraw(Ticket ticket) {
+        Deque<Ticket> waiting = waitingByUser.get(ticket.user);
+        if (waiting == null || !waiting.remove(ticket)) return;
+        queued--;
+        if (waiting.isEmpty()) {
+            waitingByUser.remove(ticket.user);
+            userRotation.remove(ticket.user);
+        }
+        log.debug("Generation for {} left the queue before it was admitted", ticket.user);
+    }
+
+    private static final class Ticket {
+        private final String user;
+        private final long enqueuedAt;
+        private MonoSink<Void> sink;
+        private boolean granted;
+        private boolean finished;
+
+        private Ticket(String user, long enqueuedAt) {
+            this.user = user;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * The generation wait queue is full. Rendered as 429 with a {@code Retry-After} header.
+ */
+public class GenerationRejectedException extends ResponseStatusException {
+    private final Duration retryAfter;
+
+    public GenerationRejectedException(Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent generations, try again later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return headers;
+    }
+}
@@ -0,0 +1,230 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.embedding.EmbeddingStopwatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps background ingestion from competing with chat for the model endpoint.
+ * <ul>
+ *     <li>crawls run on their own bounded pool instead of sharing threads with requests</li>
+ *     <li>embedding writes go through an adaptive concurrency limit: it grows by one while
+ *     chat is healthy and halves when the chat time-to-first-token p95 goes over target or
+ *     chat requests are queueing for a generation slot</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class IngestionBulkhead {
+    private final int threads;
+    private final int queueCapacity;
+    private final MeterRegistry meterRegistry;
+    private final GenerationAdmissionController admission;
+    private final IngestionMetrics ingestionMetrics;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final int batchSize;
+    private final Duration chatLatencyTarget;
+    private final Duration retryAfter;
+
+    // Guarded by this
+    private int limit;
+    private int inUse;
+    private boolean saturated;
+    // Created by the first crawl
+    private ThreadPoolExecutor executor;
+
+    public IngestionBulkhead(MeterRegistry meterRegistry,
+                             GenerationAdmissionController admission,
+                             IngestionMetrics ingestionMetrics,
+                             @Value("${app.ingestion.threads:3}") int threads,
+                             @Value("${app.ingestion.queue-capacity:20}") int queueCapacity,
+                             @Value("${app.ingestion.min-concurrency:1}") int minConcurrency,
+                             @Value("${app.ingestion.max-concurrency:4}") int maxConcurrency,
+                             @Value("${app.ingestion.embed-batch-size:32}") int batchSize,
+                             @Value("${app.ingestion.chat-latency-target:2s}") Duration chatLatencyTarget,
+                             @Value("${app.ingestion.retry-after:30s}") Duration retryAfter) {
+        this.meterRegistry = meterRegistry;
+        this.admission = admission;
+        this.ingestionMetrics = ingestionMetrics;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.batchSize = batchSize;
+        this.chatLatencyTarget = chatLatencyTarget;
+        this.retryAfter = retryAfter;
+        this.limit = maxConcurrency;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+
+        meterRegistry.gauge("ingestion.concurrency.limit", this, bulkhead -> bulkhead.limit());
+        meterRegistry.gauge("ingestion.concurrency.in.use", this, bulkhead -> bulkhead.inUse());
+        meterRegistry.gauge("ingestion.executor.queued", this, bulkhead -> bulkhead.queuedTasks());
+    }
+
+    /**
+     * Bounded pool for background ingestion work such as crawls; submissions beyond its
+     * queue are rejected with an {@link IngestionRejectedException} rather than piling up.
+     * The pool is created on first use.
+     */
+    public synchronized ExecutorService executor() {
+        if (executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "ingestion-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, pool) -> {
+                        meterRegistry.counter("ingestion.executor.rejected").increment();
+                        throw new IngestionRejectedException(retryAfter);
+                    });
+        }
+        return executor;
+    }
+
+    public synchronized int queuedTasks() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Embed and store documents in batches, each batch waiting for an ingestion permit so
+     * a backoff takes effect between batches of a large upload. If a batch fails, the
+     * batches already stored are deleted again before the failure is rethrown, so a failed
+     * upload leaves no chunks behind. When that cleanup fails too, a
+     * {@link PartialIngestionException} reports how many chunks were stored.
+     * <p>
+     * Each batch is timed as the {@code store} stage and, when the embedding model reports to
+     * an {@link EmbeddingStopwatch}, also as separate {@code embed} and {@code upsert} stages.
+     */
+    public void store(VectorStore vectorStore, List<Document> documents) {
+        long started = System.nanoTime();
+        for (int start = 0; start < documents.size(); start += batchSize) {
+            int end = Math.min(documents.size(), start + batchSize);
+            List<Document> batch = documents.subList(start, end);
+            acquire();
+            try {
+                // Embedding and upsert happen together inside the vector store, the embedding
+                // model reports its share to the stopwatch
+                EmbeddingStopwatch embedding = new EmbeddingStopwatch();
+                long storeStarted = System.nanoTime();
+                ingestionMetrics.record("store", () -> {
+                    embedding.run(() -> vectorStore.add(batch));
+                    return null;
+                });
+                long storeNanos = System.nanoTime() - storeStarted;
+                if (embedding.nanos() > 0) {
+                    ingestionMetrics.recordDuration("embed", embedding.nanos());
+                    ingestionMetrics.recordDuration("upsert", Math.max(0, storeNanos - embedding.nanos()));
+                }
+            } catch (RuntimeException e) {
+                // The failed batch may be partly upserted, so it is rolled back as well
+                if (!rollBack(vectorStore, documents.subList(0, end))) {
+                    throw new PartialIngestionException(start, documents.size(), e);
+                }
+                throw e;
+            } finally {
+                release();
+            }
+        }
+        ingestionMetrics.recordChunksStored(documents.size(), System.nanoTime() - started);
+    }
+
+    public synchronized int limit() {
+        return limit;
+    }
+
+    public synchronized int inUse() {
+        return inUse;
+    }
+
+    // AIMD on the ingestion limit, driven by how chat is doing
+    @Scheduled(fixedDelayString = "${app.ingestion.adjust-interval:5s}")
+    public void adjust() {
+        double chatP95 = chatFirstTokenP95Millis();
+        boolean chatQueued = admission.queued() > 0;
+        boolean overTarget = chatP95 > chatLatencyTarget.toMillis();
+
+        synchronized (this) {
+            int previous = limit;
+            if (overTarget || chatQueued) {
+                limit = Math.max(minConcurrency, limit / 2);
+            } else if (saturated) {
+                limit = Math.min(maxConcurrency, limit + 1);
+            }
+            saturated = false;
+            if (limit != previous) {
+                log.info("Ingestion concurrency {} -> {} (chat p95 {} ms, chat queued {})",
+                        previous, limit, Math.round(chatP95), chatQueued);
+                notifyAll();
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    private synchronized void acquire() {
+        while (inUse >= limit) {
+            saturated = true;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for an ingestion permit", e);
+            }
+        }
+        inUse++;
+        if (inUse >= limit) saturated = true;
+    }
+
+    private synchronized void release() {
+        inUse--;
+        notifyAll();
+    }
+
+    private boolean rollBack(VectorStore vectorStore, List<Document> attempted) {
+        List<String> ids = attempted.stream().map(Document::getId).toList();
+        try {
+            vectorStore.delete(ids);
+            log.info("Rolled back {} chunks after a failed ingestion batch", ids.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not roll back {} chunks after a failed ingestion batch, they stay in the vector store",
+                    ids.size(), e);
+            return false;
+        }
+    }
+
+    private double chatFirstTokenP95Millis() {
+        // One timer per model and endpoint, back off on the worst of them
+        double worst = 0;
+        for (Timer timer : meterRegistry.find(ChatMetrics.FIRST_TOKEN_TIMER).timers()) {
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                if (percentile.percentile() == 0.95) {
+                    worst = Math.max(worst, percentile.value(TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+        return worst;
+    }
+}
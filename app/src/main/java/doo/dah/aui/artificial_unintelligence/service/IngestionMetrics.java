@@ -0,0 +1,91 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-stage metrics for the ingestion pipeline (fetch, extract, split, store, and store split
+ * into embed and upsert):
+ * <ul>
+ *     <li>{@code ingestion.stage.duration{stage}} latency histogram</li>
+ *     <li>{@code ingestion.stage.in.flight{stage}} work currently running in a stage</li>
+ *     <li>{@code ingestion.stage.errors{stage,type}} failures by exception type</li>
+ *     <li>{@code ingestion.bytes{stage}} payload size entering a stage</li>
+ *     <li>{@code ingestion.chunks} and {@code ingestion.chunks.per.second} for stored chunks</li>
+ * </ul>
+ */
+@Service
+public class IngestionMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public IngestionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run one stage of the pipeline, timing it and counting failures
+     */
+    public <T, E extends Exception> T record(String stage, StageWork<T, E> work) throws E {
+        AtomicInteger running = inFlight.computeIfAbsent(stage, key ->
+                meterRegistry.gauge("ingestion.stage.in.flight", Tags.of("stage", key),
+                        new AtomicInteger()));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        running.incrementAndGet();
+        try {
+            return work.run();
+        } catch (Exception e) {
+            meterRegistry.counter("ingestion.stage.errors", "stage", stage, "type", e.getClass().getSimpleName())
+                    .increment();
+            throw e;
+        } finally {
+            running.decrementAndGet();
+            sample.stop(stageTimer(stage));
+        }
+    }
+
+    /**
+     * Record the duration of a stage that runs inside another one and cannot be wrapped on
+     * its own, such as the embedding made inside a vector store write
+     */
+    public void recordDuration(String stage, long elapsedNanos) {
+        stageTimer(stage).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBytes(String stage, long bytes) {
+        DistributionSummary.builder("ingestion.bytes")
+                .baseUnit("bytes")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    public void recordChunksStored(int chunks, long elapsedNanos) {
+        meterRegistry.counter("ingestion.chunks").increment(chunks);
+        if (chunks > 0 && elapsedNanos > 0) {
+            DistributionSummary.builder("ingestion.chunks.per.second")
+                    .register(meterRegistry)
+                    .record(chunks / (elapsedNanos / 1e9));
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("ingestion.stage.duration")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface StageWork<T, E extends Exception> {
+        T run() throws E;
+    }
+}
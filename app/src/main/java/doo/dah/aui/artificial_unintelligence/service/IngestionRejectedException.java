@@ -0,0 +1,30 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+/**
+ * The background ingestion queue is full. Rendered as 503 with a {@code Retry-After} header.
+ */
+public class IngestionRejectedException extends ResponseStatusException {
+    private final Duration retryAfter;
+
+    public IngestionRejectedException(Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Too many ingestion jobs queued, try again later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return headers;
+    }
+}
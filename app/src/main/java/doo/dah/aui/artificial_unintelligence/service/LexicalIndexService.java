@@ -0,0 +1,158 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import doo.dah.aui.artificial_unintelligence.vectorstore.KnowledgeBaseChangedEvent;
+import doo.dah.aui.artificial_unintelligence.vectorstore.MetadataFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Local SQLite FTS5 index over every chunk written to the vector store, ranked with BM25.
+ * Kept in sync through {@link KnowledgeBaseChangedEvent}s.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LexicalIndexService {
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+
+    /**
+     * Split a free text query into the terms used for FTS matching
+     */
+    public static List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query == null) return terms;
+        for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}_-]+")) {
+            if (!term.isBlank()) terms.add(term);
+        }
+        return terms;
+    }
+
+    @PostConstruct
+    public void createIndex() {
+        jdbcTemplate.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS chunk_fts USING fts5(
+                    chunk_id UNINDEXED,
+                    content,
+                    metadata UNINDEXED,
+                    tokenize = 'porter unicode61'
+                )""");
+    }
+
+    @EventListener
+    public void onKnowledgeBaseChanged(KnowledgeBaseChangedEvent event) {
+        if (!event.addedDocuments().isEmpty()) {
+            index(event.addedDocuments());
+        }
+        if (!event.deletedIds().isEmpty()) {
+            delete(event.deletedIds());
+        }
+        if (event.deleteFilter() != null) {
+            delete(event.deleteFilter());
+        }
+    }
+
+    public void index(List<Document> documents) {
+        List<Object[]> rows = documents.stream()
+                .filter(doc -> doc.getText() != null)
+                .map(doc -> new Object[]{doc.getId(), doc.getText(), toJson(doc.getMetadata())})
+                .toList();
+        sqliteWriteExecutor.execute(() -> {
+            delete(documents.stream().map(Document::getId).toList());
+            jdbcTemplate.batchUpdate("INSERT INTO chunk_fts (chunk_id, content, metadata) VALUES (?, ?, ?)", rows);
+        });
+    }
+
+    public void delete(List<String> ids) {
+        sqliteWriteExecutor.execute(() -> jdbcTemplate.batchUpdate(
+                "DELETE FROM chunk_fts WHERE chunk_id = ?",
+                ids.stream().map(id -> new Object[]{id}).toList()
+        ));
+    }
+
+    /**
+     * Delete every chunk whose stored metadata matches the filter. FTS5 cannot evaluate the
+     * filter, so the metadata of all chunks is scanned and matched in Java.
+     */
+    public void delete(Filter.Expression filter) {
+        sqliteWriteExecutor.execute(() -> {
+            List<String> ids = new ArrayList<>();
+            jdbcTemplate.query("SELECT chunk_id, metadata FROM chunk_fts", rs -> {
+                if (MetadataFilter.matches(filter, fromJson(rs.getString("metadata")))) {
+                    ids.add(rs.getString("chunk_id"));
+                }
+            });
+            log.info("Filter based delete {} removes {} chunks from the lexical index", filter, ids.size());
+            delete(ids);
+        });
+    }
+
+    /**
+     * BM25 ranked search.
+     *
+     * @param query    free text query
+     * @param limit    maximum number of results
+     * @param matchAll require every term to match (AND) instead of any term (OR)
+     * @return matching chunks, best first, with the BM25 relevance as score
+     */
+    @Transactional(readOnly = true)
+    public List<Document> search(String query, int limit, boolean matchAll) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) return List.of();
+
+        String match = terms.stream()
+                .map(term -> "\"" + term.replace("\"", "\"\"") + "\"")
+                .collect(Collectors.joining(matchAll ? " " : " OR "));
+
+        // bm25() is lower-is-better, flip it so higher scores rank first like vector similarity
+        return jdbcTemplate.query(
+                "SELECT chunk_id, content, metadata, -bm25(chunk_fts) AS score FROM chunk_fts "
+                        + "WHERE chunk_fts MATCH ? ORDER BY bm25(chunk_fts) LIMIT ?",
+                (rs, rowNum) -> Document.builder()
+                        .id(rs.getString("chunk_id"))
+                        .text(rs.getString("content"))
+                        .metadata(fromJson(rs.getString("metadata")))
+                        .score(rs.getDouble("score"))
+                        .build(),
+                match, limit
+        );
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize chunk metadata: {}", e.getMessage());
+            return "{}";
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        try {
+            return json != null ? objectMapper.readValue(json, METADATA_TYPE) : new HashMap<>();
+        } catch (JsonProcessingException e) {
+            return new HashMap<>();
+        }
+    }
+}
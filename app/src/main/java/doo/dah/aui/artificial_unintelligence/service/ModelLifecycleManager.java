@@ -0,0 +1,220 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the Ollama chat and embedding models loaded so users never pay the model load time.
+ * <ul>
+ *     <li>after startup both models are warmed with a one token prompt, retried with backoff
+ *     until they answer; the {@code models} health indicator keeps readiness down until then</li>
+ *     <li>while idle, a keep-alive ping is sent every {@code ping-interval}; chat traffic keeps
+ *     the models resident by itself, so no pings are sent while requests are coming in</li>
+ *     <li>after {@code idle-timeout} without traffic pings stop and Ollama may unload the
+ *     models, {@code 0} keeps them warm indefinitely</li>
+ * </ul>
+ * Every warm-up and ping asks Ollama to keep the model for {@code keep-alive}. The small
+ * routing model, when configured, is kept warm alongside the chat model.
+ */
+@Slf4j
+@Service
+public class ModelLifecycleManager {
+    public static final String CHAT = "chat";
+    public static final String EMBEDDING = "embedding";
+    public static final String CHAT_SMALL = "chat-small";
+
+    private static final Duration MAX_WARM_UP_BACKOFF = Duration.ofSeconds(30);
+
+    private final OllamaChatModel chatModel;
+    private final OllamaEmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+    private final String smallModel;
+    private final boolean warmUpEnabled;
+    private final String keepAlive;
+    private final Duration pingInterval;
+    private final Duration idleTimeout;
+
+    private final Map<String, ModelStatus> status = new ConcurrentHashMap<>();
+    private volatile Thread warmUpThread;
+    private volatile boolean warmedUp;
+    // Chat traffic seen through the time-to-first-token timers
+    private long lastRequestCount;
+    private Instant lastTraffic = Instant.now();
+    private Instant lastPing = Instant.now();
+
+    public ModelLifecycleManager(OllamaChatModel chatModel,
+                                 OllamaEmbeddingModel embeddingModel,
+                                 MeterRegistry meterRegistry,
+                                 ModelRoutingProperties routingProperties,
+                                 @Value("${app.models.warm-up:true}") boolean warmUpEnabled,
+                                 @Value("${app.models.keep-alive:30m}") String keepAlive,
+                                 @Value("${app.models.ping-interval:10m}") Duration pingInterval,
+                                 @Value("${app.models.idle-timeout:0}") Duration idleTimeout) {
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        this.smallModel = routingProperties.isEnabled() ? routingProperties.getSmallModel() : "";
+        this.warmUpEnabled = warmUpEnabled;
+        this.keepAlive = keepAlive;
+        this.pingInterval = pingInterval;
+        this.idleTimeout = idleTimeout;
+    }
+
+    // Warm up off the startup thread, readiness reports the progress
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUpEnabled) {
+            warmedUp = true;
+            return;
+        }
+        warmUpThread = Thread.ofVirtual().name("model-warm-up").start(this::warmUpUntilLoaded);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = warmUpThread;
+        if (thread != null) thread.interrupt();
+    }
+
+    /**
+     * Ping the models when idle. Runs often; whether a ping is due depends on traffic.
+     */
+    @Scheduled(fixedDelayString = "${app.models.check-interval:1m}")
+    public void keepAlive() {
+        if (!warmedUp || !warmUpEnabled) return;
+
+        Instant now = Instant.now();
+        long requests = chatRequestCount();
+        synchronized (this) {
+            if (requests != lastRequestCount) {
+                lastRequestCount = requests;
+                lastTraffic = now;
+                return;
+            }
+            boolean idleTooLong = !idleTimeout.isZero() && lastTraffic.plus(idleTimeout).isBefore(now);
+            if (idleTooLong || lastPing.plus(pingInterval).isAfter(now) || lastTraffic.plus(pingInterval).isAfter(now)) {
+                return;
+            }
+            lastPing = now;
+        }
+        load(CHAT, () -> pingChat(null));
+        load(EMBEDDING, this::pingEmbedding);
+        if (!smallModel.isBlank()) load(CHAT_SMALL, () -> pingChat(smallModel));
+    }
+
+    /**
+     * @return true once every model has answered a warm-up
+     */
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Load state per model, for the health indicator
+     */
+    public Map<String, ModelStatus> status() {
+        return Map.copyOf(status);
+    }
+
+    private void warmUpUntilLoaded() {
+        Duration backoff = Duration.ofSeconds(1);
+        while (!Thread.currentThread().isInterrupted()) {
+            boolean chatLoaded = isLoaded(CHAT) || load(CHAT, () -> pingChat(null));
+            boolean embeddingLoaded = isLoaded(EMBEDDING) || load(EMBEDDING, this::pingEmbedding);
+            boolean smallLoaded = smallModel.isBlank() || isLoaded(CHAT_SMALL)
+                    || load(CHAT_SMALL, () -> pingChat(smallModel));
+            if (chatLoaded && embeddingLoaded && smallLoaded) {
+                synchronized (this) {
+                    lastPing = Instant.now();
+                    lastTraffic = lastPing;
+                    lastRequestCount = chatRequestCount();
+                }
+                warmedUp = true;
+                log.info("Models warmed up: {}", status);
+                return;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = backoff.multipliedBy(2);
+            if (backoff.compareTo(MAX_WARM_UP_BACKOFF) > 0) backoff = MAX_WARM_UP_BACKOFF;
+        }
+    }
+
+    private boolean isLoaded(String model) {
+        ModelStatus current = status.get(model);
+        return current != null && current.loaded();
+    }
+
+    private boolean load(String model, Supplier<?> ping) {
+        long started = System.nanoTime();
+        try {
+            ping.get();
+            Duration took = Duration.ofNanos(System.nanoTime() - started);
+            Timer.builder("model.load.duration")
+                    .description("Time for a warm-up or keep-alive request, includes any model load")
+                    .tags("model", model, "outcome", "success")
+                    .register(meterRegistry)
+                    .record(took);
+            status.put(model, new ModelStatus(true, Instant.now(), null));
+            log.debug("{} model answered in {} ms", model, took.toMillis());
+            return true;
+        } catch (RuntimeException e) {
+            meterRegistry.counter("model.load.failures", "model", model).increment();
+            status.put(model, new ModelStatus(false, Instant.now(), e.getMessage()));
+            log.warn("{} model did not answer the warm-up: {}", model, e.getMessage());
+            return false;
+        }
+    }
+
+    // A null model pings the configured chat model
+    private Object pingChat(String model) {
+        return chatModel.call(new Prompt("ok", OllamaOptions.builder()
+                .model(model)
+                .numPredict(1)
+                .keepAlive(keepAlive)
+                .build()));
+    }
+
+    private Object pingEmbedding() {
+        return embeddingModel.call(new EmbeddingRequest(List.of("ok"), OllamaOptions.builder()
+                .keepAlive(keepAlive)
+                .build()));
+    }
+
+    private long chatRequestCount() {
+        return meterRegistry.find(ChatMetrics.FIRST_TOKEN_TIMER).timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    /**
+     * @param loaded    whether the last warm-up or ping succeeded
+     * @param checkedAt when the model was last contacted
+     * @param error     the last failure, null after a success
+     */
+    public record ModelStatus(boolean loaded, Instant checkedAt, String error) {
+    }
+}
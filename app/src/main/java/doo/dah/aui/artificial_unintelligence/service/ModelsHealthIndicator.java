@@ -0,0 +1,28 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports {@code models} health, part of the readiness group so load balancers only route
+ * to instances whose models are loaded. Down until the warm-up finished and whenever the
+ * last contact with a model failed.
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelsHealthIndicator implements HealthIndicator {
+    private final ModelLifecycleManager modelLifecycleManager;
+
+    @Override
+    public Health health() {
+        var status = modelLifecycleManager.status();
+        boolean loaded = modelLifecycleManager.isWarmedUp()
+                && status.values().stream().allMatch(ModelLifecycleManager.ModelStatus::loaded);
+        Health.Builder builder = loaded ? Health.up() : Health.down();
+        if (!modelLifecycleManager.isWarmedUp()) builder.withDetail("warmUp", "in progress");
+        status.forEach(builder::withDetail);
+        return builder.build();
+    }
+}
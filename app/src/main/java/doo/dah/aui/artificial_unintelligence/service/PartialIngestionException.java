@@ -0,0 +1,20 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+/**
+ * A batch of an upload failed and the batches stored before it could not be rolled back, so
+ * part of the document is still in the vector store. Callers keep the document's catalog
+ * entry so those chunks stay resolvable and can be deleted with the document later.
+ */
+public class PartialIngestionException extends RuntimeException {
+    private final int storedChunks;
+
+    public PartialIngestionException(int storedChunks, int totalChunks, RuntimeException cause) {
+        super(String.format("Stored %d of %d chunks before failing: %s", storedChunks, totalChunks, cause.getMessage()),
+                cause);
+        this.storedChunks = storedChunks;
+    }
+
+    public int getStoredChunks() {
+        return storedChunks;
+    }
+}
@@ -1,15 +1,20 @@
 package doo.dah.aui.artificial_unintelligence.service;
 
+import doo.dah.aui.artificial_unintelligence.vectorstore.CachingVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -19,9 +24,19 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PineconeService {
     private static final int CHUNK_SIZE = 500;
+    // Upper bound on offset + page size, keeps deep pagination from pulling huge result sets
+    private static final int MAX_SEARCH_WINDOW = 1000;
     private final VectorStore vectorStore;
     private final RestTemplate restTemplate;
     private final DocumentProcessingService documentProcessingService;
+    private final ChunkIndexService chunkIndexService;
+    private final DocumentCatalogService documentCatalogService;
+    private final IngestionBulkhead ingestionBulkhead;
+    private final IngestionMetrics ingestionMetrics;
+    private final CachingVectorStore cachingVectorStore;
+    // Log one in this many extracted payloads at debug, full page text is too big to log every time
+    @Value("${app.ingestion.debug-sample-rate:100}")
+    private int debugSampleRate;
 
     /**
      * Safely estimate token count from text, handling potentially very large content
@@ -37,20 +52,21 @@ public class PineconeService {
     }
 
     /**
-     * Split processed content into smaller chunks suitable for vector storage
+     * Split processed content into smaller chunks suitable for vector storage. The metadata is
+     * registered in the document catalog; chunks only carry the compact chunk metadata.
      *
      * @param content  The processed content to split
-     * @param metadata The metadata to include with each chunk
+     * @param metadata The document metadata, stored once in the catalog
      * @return List of Document objects ready for vector store
      */
     public List<Document> chunkContent(String content, Map<String, Object> metadata) {
         List<Document> chunks = new ArrayList<>();
+        String documentId = documentCatalogService.register(metadata);
 
         // If content is small enough, no need to chunk
         if (content.length() <= CHUNK_SIZE) {
             Document doc = new Document(content);
-            doc.getMetadata().putAll(metadata);
-            doc.getMetadata().put("chunk", 1);
+            doc.getMetadata().putAll(documentCatalogService.chunkMetadata(documentId, metadata, 1));
             doc.getMetadata().put("totalChunks", 1);
             chunks.add(doc);
             return chunks;
@@ -67,8 +83,7 @@ public class PineconeService {
             if (currentChunk.length() + paragraph.length() > CHUNK_SIZE && currentChunk.length() > 0) {
                 // Create document from current chunk
                 Document doc = new Document(currentChunk.toString());
-                doc.getMetadata().putAll(metadata);
-                doc.getMetadata().put("chunk", chunkIndex);
+                doc.getMetadata().putAll(documentCatalogService.chunkMetadata(documentId, metadata, chunkIndex));
                 chunks.add(doc);
 
                 // Reset for next chunk
@@ -82,8 +97,7 @@ public class PineconeService {
         // Add the last chunk if not empty
         if (currentChunk.length() > 0) {
             Document doc = new Document(currentChunk.toString());
-            doc.getMetadata().putAll(metadata);
-            doc.getMetadata().put("chunk", chunkIndex);
+            doc.getMetadata().putAll(documentCatalogService.chunkMetadata(documentId, metadata, chunkIndex));
             chunks.add(doc);
         }
 
@@ -119,21 +133,24 @@ public class PineconeService {
     public Map<String, Object> processUrlContent(String url, String title, List<String> tags) {
         try {
             // Download content from the URL
-            String rawContent = restTemplate.getForObject(url, String.class);
+            String rawContent = ingestionMetrics.record("fetch", () -> restTemplate.getForObject(url, String.class));
             if (rawContent == null || rawContent.isEmpty()) {
                 throw new IllegalArgumentException("Could not retrieve content from URL");
             }
+            ingestionMetrics.recordBytes("fetch", rawContent.getBytes(StandardCharsets.UTF_8).length);
 
             // Log the raw content size
             long rawTokenEstimate = estimateTokenCount(rawContent);
             log.info("Downloaded content from URL: {} with estimated {} tokens", url, rawTokenEstimate);
 
             // Process the HTML content to reduce tokens
-            org.jsoup.nodes.Document doc = Jsoup.parse(rawContent);
+            org.jsoup.nodes.Document doc = ingestionMetrics.record("extract", () -> Jsoup.parse(rawContent));
 
             // Extract just the text
             String processedContent = doc.text();
-            log.info("Extracted text from HTML content with\n {}", processedContent);
+            if (log.isDebugEnabled() && ThreadLocalRandom.current().nextInt(debugSampleRate) == 0) {
+                log.debug("Sampled extracted text from {}:\n {}", url, processedContent);
+            }
             long processedTokenEstimate = estimateTokenCount(processedContent);
 
             log.info("Processed content from URL: {} - Raw tokens: {}, Processed tokens: {}, Reduction: {}%",
@@ -160,11 +177,20 @@ public class PineconeService {
             }
 
             // Chunk the content and create documents
-            List<Document> chunks = chunkContent(processedContent, metadata);
+            List<Document> chunks = ingestionMetrics.record("split", () -> chunkContent(processedContent, metadata));
             log.info("Created {} chunks from content", chunks.size());
 
-            // Add all chunks to vector store
-            vectorStore.add(chunks);
+            // Add all chunks to vector store, a failed store must not leave the catalog entry behind
+            // unless some of its chunks could not be rolled back
+            try {
+                ingestionBulkhead.store(vectorStore, chunks);
+            } catch (PartialIngestionException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                documentCatalogService.remove(List.of(
+                        chunks.get(0).getMetadata().get(DocumentCatalogService.DOCUMENT_ID_KEY).toString()));
+                throw e;
+            }
             log.info("Successfully added {} document chunks from URL: {}", chunks.size(), url);
 
             // Return the first document's ID for reference
@@ -226,20 +252,59 @@ public class PineconeService {
      * Search for documents in the vector store
      */
     public List<Map<String, Object>> searchDocuments(String query, int topK) {
-        List<Document> results = this.vectorStore.similaritySearch(
-                SearchRequest.builder()
-                        .query(query)
-                        .topK(topK)
-                        .build()
-        );
-
-        return Objects.requireNonNull(results).stream().map(doc -> {
-            Map<String, Object> resultMap = new HashMap<>();
-            resultMap.put("id", doc.getId());
-            resultMap.put("content", Objects.requireNonNull(doc.getText()));
-            resultMap.put("metadata", doc.getMetadata());
-            return resultMap;
-        }).collect(Collectors.toList());
+        return searchPage(query, topK, null, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, 0)
+                .documents().stream()
+                .map(doc -> toResult(doc, true))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Search one page of results. Vector stores have no native offset, so the first
+     * {@code offset + pageSize} hits are fetched and the leading {@code offset} skipped.
+     * The search cache is bypassed so the call measures the real retrieval latency.
+     *
+     * @param query            the text to search for
+     * @param pageSize         number of results per page
+     * @param filterExpression optional portable filter expression, e.g. {@code source == 'direct'}
+     * @param threshold        minimum similarity score
+     * @param offset           number of results to skip
+     * @return the page and the offset of the next page, or null when this is the last page
+     * @throws IllegalArgumentException when the page size is not positive or the offset is negative
+     */
+    public SearchPage searchPage(String query, int pageSize, String filterExpression, double threshold, int offset) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("topK must be positive, was " + pageSize);
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int window = Math.min(offset + pageSize, MAX_SEARCH_WINDOW);
+        SearchRequest.Builder request = SearchRequest.builder()
+                .query(query)
+                .topK(window)
+                .similarityThreshold(threshold);
+        if (filterExpression != null && !filterExpression.isBlank()) {
+            request.filterExpression(filterExpression);
+        }
+
+        List<Document> results = documentCatalogService.hydrate(
+                Objects.requireNonNull(cachingVectorStore.similaritySearchUncached(request.build())));
+        List<Document> page = results.stream().skip(offset).limit(pageSize).toList();
+
+        boolean more = results.size() == window && window < MAX_SEARCH_WINDOW;
+        return new SearchPage(page, more ? offset + page.size() : null);
+    }
+
+    /**
+     * Flatten a search hit into a serializable map
+     */
+    public Map<String, Object> toResult(Document doc, boolean includeContent) {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("id", doc.getId());
+        if (doc.getScore() != null) resultMap.put("score", doc.getScore());
+        if (includeContent) resultMap.put("content", Objects.requireNonNull(doc.getText()));
+        resultMap.put("metadata", doc.getMetadata());
+        return resultMap;
     }
 
     /**
@@ -248,4 +313,30 @@ public class PineconeService {
     public void deleteDocument(String id) {
         vectorStore.delete(Collections.singletonList(id));
     }
+
+    /**
+     * Delete many documents from the vector store; the store sends them in batches
+     *
+     * @return the number of ids submitted for deletion
+     */
+    public int deleteDocuments(List<String> ids) {
+        vectorStore.delete(List.copyOf(ids));
+        return ids.size();
+    }
+
+    /**
+     * Delete every chunk whose metadata matches all given (non-null) criteria. Ids are
+     * resolved through the local chunk index, so no remote scan is needed.
+     *
+     * @return the number of chunks deleted
+     */
+    public int deleteDocumentsMatching(String source, String title, String tag, Instant from, Instant to) {
+        List<String> ids = chunkIndexService.findIds(source, title, tag, from, to);
+        log.info("Deleting {} chunks matching source={}, title={}, tag={}, from={}, to={}",
+                ids.size(), source, title, tag, from, to);
+        return deleteDocuments(ids);
+    }
+
+    public record SearchPage(List<Document> documents, Integer nextOffset) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.QuestionRollup;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.QuestionRollupRepository;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maintains the hourly and daily {@link QuestionRollup}s and answers the analytics queries
+ * over them and over the compact question log.
+ */
+@Service
+@RequiredArgsConstructor
+public class QuestionAnalyticsService {
+    public static final Map<String, ChronoUnit> GRANULARITIES = Map.of(
+            "HOUR", ChronoUnit.HOURS,
+            "DAY", ChronoUnit.DAYS
+    );
+
+    private final QuestionRollupRepository questionRollupRepository;
+    private final UserQuestionRepository userQuestionRepository;
+
+    /**
+     * Add a batch of logged questions to their rollup buckets. Callers run this in the same
+     * transaction that stores the questions.
+     */
+    public void applyRollups(List<UserQuestion> questions) {
+        Map<String, QuestionRollup> deltas = new HashMap<>();
+        for (UserQuestion question : questions) {
+            for (var granularity : GRANULARITIES.entrySet()) {
+                // Instants are UTC, so days are UTC days
+                Instant bucket = question.getTimestamp().truncatedTo(granularity.getValue());
+                String id = granularity.getKey() + "|" + bucket;
+                QuestionRollup delta = deltas.computeIfAbsent(id, key -> QuestionRollup.builder()
+                        .id(key)
+                        .granularity(granularity.getKey())
+                        .bucketStart(bucket)
+                        .build());
+                add(delta, 1, valueOf(question.getAnswerLength()), valueOf(question.getPromptTokens()),
+                        valueOf(question.getCompletionTokens()), valueOf(question.getLatencyMs()));
+            }
+        }
+
+        Map<String, QuestionRollup> existing = new HashMap<>();
+        questionRollupRepository.findAllById(deltas.keySet()).forEach(rollup -> existing.put(rollup.getId(), rollup));
+        for (QuestionRollup delta : deltas.values()) {
+            QuestionRollup current = existing.get(delta.getId());
+            if (current == null) {
+                existing.put(delta.getId(), delta);
+            } else {
+                add(current, delta.getQuestions(), delta.getAnswerLength(), delta.getPromptTokens(),
+                        delta.getCompletionTokens(), delta.getLatencyMs());
+            }
+        }
+        questionRollupRepository.saveAll(existing.values());
+    }
+
+    public List<QuestionRollup> rollups(String granularity, Instant from, Instant to) {
+        return questionRollupRepository.findByGranularityAndBucketStartBetweenOrderByBucketStart(granularity, from, to);
+    }
+
+    /**
+     * Most recent questions first, optionally for one user
+     */
+    public List<UserQuestion> questions(String username, Instant from, Instant to, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return username != null
+                ? userQuestionRepository.findByUsernameAndTimestampBetweenOrderByTimestampDesc(username, from, to, page)
+                : userQuestionRepository.findByTimestampBetweenOrderByTimestampDesc(from, to, page);
+    }
+
+    private static void add(QuestionRollup rollup, long questions, long answerLength, long promptTokens,
+                            long completionTokens, long latencyMs) {
+        rollup.setQuestions(rollup.getQuestions() + questions);
+        rollup.setAnswerLength(rollup.getAnswerLength() + answerLength);
+        rollup.setPromptTokens(rollup.getPromptTokens() + promptTokens);
+        rollup.setCompletionTokens(rollup.getCompletionTokens() + completionTokens);
+        rollup.setLatencyMs(rollup.getLatencyMs() + latencyMs);
+    }
+
+    private static long valueOf(Number value) {
+        return Objects.requireNonNullElse(value, 0).longValue();
+    }
+}
@@ -0,0 +1,233 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only archive of {@link UserQuestion}s, one file per month.
+ * <p>
+ * {@code questions-YYYY-MM.ndjson.gz} holds one JSON question per line. Every append is
+ * written as its own gzip member, so the file stays a valid gzip stream and nothing already
+ * written is rewritten. {@code questions-YYYY-MM.idx} gets one JSON line per member with its
+ * byte range, id range, time range and count, which lets readers skip members outside the
+ * time range they want.
+ */
+@Slf4j
+@Component
+public class QuestionArchive {
+    private static final String PREFIX = "questions-";
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    public QuestionArchive(ObjectMapper objectMapper,
+                           @Value("${app.question-log.archive.directory:archive/questions}") Path directory) {
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+    }
+
+    /**
+     * Append questions to their monthly archives. Returns once data and index are on disk.
+     */
+    public synchronized void append(List<UserQuestion> questions) throws IOException {
+        Files.createDirectories(directory);
+        Map<YearMonth, List<UserQuestion>> byMonth = new TreeMap<>();
+        for (UserQuestion question : questions) {
+            byMonth.computeIfAbsent(YearMonth.from(question.getTimestamp().atOffset(ZoneOffset.UTC)),
+                    month -> new ArrayList<>()).add(question);
+        }
+        for (var month : byMonth.entrySet()) {
+            appendSegment(month.getKey(), month.getValue());
+        }
+    }
+
+    /**
+     * Find which of the given questions are already in the archive, matched on id and
+     * timestamp together. SQLite reuses ids once the table is emptied, so an id alone does
+     * not identify an archived row; a reused id always comes with a later timestamp. Only
+     * segments whose id and time ranges cover a candidate are decompressed.
+     *
+     * @return the candidates that are archived already
+     */
+    public synchronized List<UserQuestion> alreadyArchived(List<UserQuestion> candidates) throws IOException {
+        if (candidates.isEmpty()) return List.of();
+        Set<YearMonth> candidateMonths = new TreeSet<>();
+        for (UserQuestion candidate : candidates) {
+            candidateMonths.add(YearMonth.from(candidate.getTimestamp().atOffset(ZoneOffset.UTC)));
+        }
+
+        Set<ArchivedKey> archived = new HashSet<>();
+        for (YearMonth month : candidateMonths) {
+            for (Segment segment : segments(month)) {
+                boolean covers = candidates.stream().anyMatch(candidate -> segment.covers(candidate));
+                if (!covers) continue;
+                for (UserQuestion question : readSegment(month, segment)) {
+                    archived.add(ArchivedKey.of(question));
+                }
+            }
+        }
+        return candidates.stream()
+                .filter(candidate -> archived.contains(ArchivedKey.of(candidate)))
+                .toList();
+    }
+
+    public List<YearMonth> months() throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(".idx"))
+                    .map(name -> YearMonth.parse(name.substring(PREFIX.length(), name.length() - ".idx".length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public List<Segment> segments(YearMonth month) throws IOException {
+        Path index = indexFile(month);
+        if (!Files.exists(index)) return List.of();
+        List<Segment> segments = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(index)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) segments.add(objectMapper.readValue(line, Segment.class));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Stream archived questions of one month in the time range, one segment in memory at a time
+     */
+    public Flux<UserQuestion> read(YearMonth month, Instant from, Instant to, Predicate<UserQuestion> filter) {
+        return Flux.defer(() -> {
+                    try {
+                        return Flux.fromIterable(segments(month));
+                    } catch (IOException e) {
+                        return Flux.error(e);
+                    }
+                })
+                .filter(segment -> !segment.to().isBefore(from) && !segment.from().isAfter(to))
+                .concatMap(segment -> Flux.defer(() -> Flux.fromIterable(readSegment(month, segment)))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .filter(question -> !question.getTimestamp().isBefore(from) && !question.getTimestamp().isAfter(to))
+                .filter(filter);
+    }
+
+    private void appendSegment(YearMonth month, List<UserQuestion> questions) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(compressed), StandardCharsets.UTF_8)) {
+            for (UserQuestion question : questions) {
+                writer.write(objectMapper.writeValueAsString(question));
+                writer.write('\n');
+            }
+        }
+
+        long offset;
+        try (FileChannel data = FileChannel.open(dataFile(month),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            offset = data.size();
+            ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+            while (buffer.hasRemaining()) data.write(buffer);
+            data.force(true);
+        }
+
+        Segment segment = new Segment(offset, compressed.size(),
+                questions.stream().mapToLong(UserQuestion::getId).min().orElse(0),
+                questions.stream().mapToLong(UserQuestion::getId).max().orElse(0),
+                questions.stream().map(UserQuestion::getTimestamp).min(Instant::compareTo).orElseThrow(),
+                questions.stream().map(UserQuestion::getTimestamp).max(Instant::compareTo).orElseThrow(),
+                questions.size());
+        // The index line is written after the data is durable, a crash in between only leaves
+        // unindexed bytes that readers never look at
+        try (FileChannel index = FileChannel.open(indexFile(month),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap((objectMapper.writeValueAsString(segment) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) index.write(buffer);
+            index.force(true);
+        }
+        log.debug("Archived {} questions into {} at offset {}", questions.size(), dataFile(month), offset);
+    }
+
+    private List<UserQuestion> readSegment(YearMonth month, Segment segment) {
+        try (FileChannel data = FileChannel.open(dataFile(month), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) segment.length());
+            data.position(segment.offset());
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer) < 0) throw new IOException("Archive segment at " + segment.offset() + " is truncated");
+            }
+
+            List<UserQuestion> questions = new ArrayList<>(segment.count());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(buffer.array())), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) questions.add(objectMapper.readValue(line, UserQuestion.class));
+                }
+            }
+            return questions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path dataFile(YearMonth month) {
+        return directory.resolve(PREFIX + month + ".ndjson.gz");
+    }
+
+    private Path indexFile(YearMonth month) {
+        return directory.resolve(PREFIX + month + ".idx");
+    }
+
+    /**
+     * One gzip member of a monthly archive
+     */
+    public record Segment(long offset, long length, long firstId, long lastId, Instant from, Instant to,
+                          int count) {
+
+        boolean covers(UserQuestion question) {
+            return question.getId() >= firstId && question.getId() <= lastId
+                    && !question.getTimestamp().isBefore(from) && !question.getTimestamp().isAfter(to);
+        }
+    }
+
+    private record ArchivedKey(long id, Instant timestamp) {
+        static ArchivedKey of(UserQuestion question) {
+            return new ArchivedKey(question.getId(), question.getTimestamp());
+        }
+    }
+}
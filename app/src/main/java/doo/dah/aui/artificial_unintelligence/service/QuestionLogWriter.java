@@ -0,0 +1,169 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind log of user questions. Callers only enqueue; a dedicated writer thread
+ * drains the queue and stores everything that arrived within one flush interval, together
+ * with its rollups, in a single transaction, so chat requests never wait on a SQLite
+ * commit or lock.
+ * <p>
+ * When the queue is full the configured overflow policy decides what is lost:
+ * {@code drop-newest} rejects the new entry, {@code drop-oldest} evicts the oldest
+ * pending one. Either way the drop is counted, chat is never blocked.
+ */
+@Slf4j
+@Service
+public class QuestionLogWriter {
+    private final UserQuestionRepository userQuestionRepository;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+    private final QuestionAnalyticsService questionAnalyticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final Duration flushInterval;
+    private final int batchSize;
+    private final boolean dropOldest;
+
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer lag;
+    private final DistributionSummary batchSizes;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    public QuestionLogWriter(UserQuestionRepository userQuestionRepository,
+                             SqliteWriteExecutor sqliteWriteExecutor,
+                             QuestionAnalyticsService questionAnalyticsService,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.question-log.queue-capacity:10000}") int queueCapacity,
+                             @Value("${app.question-log.flush-interval:1s}") Duration flushInterval,
+                             @Value("${app.question-log.batch-size:500}") int batchSize,
+                             @Value("${app.question-log.overflow-policy:drop-oldest}") String overflowPolicy) {
+        this.userQuestionRepository = userQuestionRepository;
+        this.sqliteWriteExecutor = sqliteWriteExecutor;
+        this.questionAnalyticsService = questionAnalyticsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.dropOldest = switch (overflowPolicy.toLowerCase(Locale.ROOT)) {
+            case "drop-oldest" -> true;
+            case "drop-newest" -> false;
+            default -> throw new IllegalArgumentException("Unknown app.question-log.overflow-policy '"
+                    + overflowPolicy + "', expected drop-oldest or drop-newest");
+        };
+
+        this.dropped = meterRegistry.counter("question.log.dropped");
+        this.failed = meterRegistry.counter("question.log.failed");
+        this.lag = Timer.builder("question.log.lag")
+                .description("Time from enqueueing a question to committing it")
+                .register(meterRegistry);
+        this.batchSizes = meterRegistry.summary("question.log.batch.size");
+        meterRegistry.gaugeCollectionSize("question.log.pending", Tags.empty(), queue);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "question-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a question for storage, never blocks
+     */
+    public void enqueue(UserQuestion question) {
+        Pending pending = new Pending(question, System.nanoTime());
+        while (!queue.offer(pending)) {
+            if (!dropOldest || queue.poll() == null) {
+                dropped.increment();
+                return;
+            }
+            dropped.increment();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        // Whatever the writer did not get to is written on the shutdown thread
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        write(remaining);
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Collect what arrives within one flush interval into the same transaction
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutting down, write what was collected and let stop() drain the rest
+                write(batch);
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            // Questions and their rollups are committed together
+            List<UserQuestion> questions = batch.stream().map(Pending::question).toList();
+            sqliteWriteExecutor.execute(() -> transactionTemplate.executeWithoutResult(status -> {
+                userQuestionRepository.saveAll(questions);
+                questionAnalyticsService.applyRollups(questions);
+            }));
+            long now = System.nanoTime();
+            for (Pending pending : batch) {
+                lag.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+            }
+            batchSizes.record(batch.size());
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.error("Failed to persist {} user questions: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private record Pending(UserQuestion question, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,103 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves questions older than the retention window out of SQLite and into the
+ * {@link QuestionArchive}: archive a bounded batch, delete it, repeat, then hand the freed
+ * pages back with an incremental vacuum. Rollups are kept, they are small and reports
+ * over old periods keep working.
+ */
+@Slf4j
+@Service
+public class QuestionRetentionService {
+    // Pages handed back per run, bounds how long a single vacuum holds the write lock
+    private static final int VACUUM_PAGES = 2000;
+    // PRAGMA auto_vacuum value for INCREMENTAL
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final UserQuestionRepository userQuestionRepository;
+    private final QuestionArchive questionArchive;
+    private final SqliteWriteExecutor sqliteWriteExecutor;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final int batchSize;
+    private final Counter archived;
+
+    public QuestionRetentionService(UserQuestionRepository userQuestionRepository,
+                                    QuestionArchive questionArchive,
+                                    SqliteWriteExecutor sqliteWriteExecutor,
+                                    JdbcTemplate jdbcTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.question-log.retention:90d}") Duration retention,
+                                    @Value("${app.question-log.archive.batch-size:1000}") int batchSize) {
+        this.userQuestionRepository = userQuestionRepository;
+        this.questionArchive = questionArchive;
+        this.sqliteWriteExecutor = sqliteWriteExecutor;
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.archived = meterRegistry.counter("question.log.archived");
+    }
+
+    @Scheduled(cron = "${app.question-log.archive.cron:0 30 3 * * *}")
+    public synchronized void archiveExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        long total = 0;
+        try {
+            List<UserQuestion> batch;
+            while (!(batch = userQuestionRepository.findByTimestampBeforeOrderByIdAsc(cutoff,
+                    PageRequest.of(0, batchSize))).isEmpty()) {
+                // A crash between archiving and deleting leaves archived rows behind, they are
+                // recognised by id and timestamp and only deleted this time
+                Set<UserQuestion> alreadyArchived = new HashSet<>(questionArchive.alreadyArchived(batch));
+                List<UserQuestion> toArchive = batch.stream()
+                        .filter(question -> !alreadyArchived.contains(question))
+                        .toList();
+                if (!toArchive.isEmpty()) {
+                    questionArchive.append(toArchive);
+                }
+                List<Long> ids = batch.stream().map(UserQuestion::getId).toList();
+                sqliteWriteExecutor.execute(() -> userQuestionRepository.deleteAllByIdInBatch(ids));
+                archived.increment(batch.size());
+                total += batch.size();
+            }
+        } catch (IOException e) {
+            log.error("Archiving questions failed after {} rows, the rest stays in the database: {}",
+                    total, e.getMessage());
+        }
+
+        if (total > 0) {
+            log.info("Archived {} questions older than {}", total, cutoff);
+            sqliteWriteExecutor.execute(this::vacuum);
+        }
+    }
+
+    private void vacuum() {
+        Integer mode = jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class);
+        if (mode == null || mode != AUTO_VACUUM_INCREMENTAL) {
+            // Switching modes only takes effect with a full VACUUM, paid once
+            log.info("Enabling incremental auto vacuum, running a one-time full VACUUM");
+            jdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            jdbcTemplate.execute("VACUUM");
+            return;
+        }
+        jdbcTemplate.execute("PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")");
+    }
+}
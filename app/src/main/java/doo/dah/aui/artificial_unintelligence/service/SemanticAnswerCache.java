@@ -0,0 +1,155 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import doo.dah.aui.artificial_unintelligence.vectorstore.KnowledgeBaseChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small in-memory vector index of previously answered questions. A new question whose
+ * embedding is close enough to a cached one gets the cached answer replayed instead of
+ * a fresh retrieval + generation.
+ * <p>
+ * The cache is shared between users, so callers must only use it for turns that do not
+ * depend on a conversation. Answers are kept per forced model route; a question forced to
+ * the large model never gets an answer cached for another route.
+ */
+@Slf4j
+@Service
+public class SemanticAnswerCache {
+    private final EmbeddingModel embeddingModel;
+    private final Cache<String, CachedAnswer> answers;
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.chat.answer-cache.enabled:true}")
+    private boolean enabled;
+    @Value("${app.chat.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    public SemanticAnswerCache(EmbeddingModel embeddingModel,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.chat.answer-cache.ttl:1h}") Duration ttl,
+                               @Value("${app.chat.answer-cache.maximum-size:500}") long maximumSize) {
+        this.embeddingModel = embeddingModel;
+        this.answers = Caffeine.newBuilder()
+                .expireAfterAccess(ttl)
+                .maximumSize(maximumSize)
+                .build();
+        this.hits = meterRegistry.counter("chat.answer.cache", "result", "hit");
+        this.misses = meterRegistry.counter("chat.answer.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("chat.answer.cache.size", Tags.empty(), answers.asMap());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Current knowledge base generation; pass it back to {@link #put} so answers
+     * generated against an outdated knowledge base are not cached.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Embed the question and normalize the vector to unit length. Blocking.
+     */
+    public float[] embed(String question) {
+        return normalize(embeddingModel.embed(normalizeQuestion(question)));
+    }
+
+    /**
+     * Find the cached answer for the same route whose question is most similar to the given
+     * embedding
+     *
+     * @param route the forced model route, null when the router decides
+     */
+    public Optional<List<String>> lookup(float[] embedding, String route) {
+        String bestKey = null;
+        double bestScore = similarityThreshold;
+        String normalizedRoute = normalizeRoute(route);
+        for (var entry : answers.asMap().entrySet()) {
+            if (!entry.getValue().route().equals(normalizedRoute)) continue;
+            double score = dot(embedding, entry.getValue().embedding());
+            if (score >= bestScore) {
+                bestScore = score;
+                bestKey = entry.getKey();
+            }
+        }
+
+        // Go through getIfPresent so the hit counts as an access for eviction
+        CachedAnswer answer = bestKey != null ? answers.getIfPresent(bestKey) : null;
+        if (answer == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        log.debug("Semantic cache hit for '{}' with similarity {}", bestKey, bestScore);
+        return Optional.of(answer.chunks());
+    }
+
+    public void put(String question, String route, float[] embedding, List<String> chunks, long expectedGeneration) {
+        if (chunks.isEmpty() || expectedGeneration != generation.get()) {
+            return;
+        }
+        String normalizedRoute = normalizeRoute(route);
+        answers.put(normalizedRoute + "|" + normalizeQuestion(question),
+                new CachedAnswer(normalizedRoute, embedding, List.copyOf(chunks)));
+    }
+
+    @EventListener
+    public void onKnowledgeBaseChanged(KnowledgeBaseChangedEvent event) {
+        generation.incrementAndGet();
+        answers.invalidateAll();
+    }
+
+    private static String normalizeQuestion(String question) {
+        return question.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeRoute(String route) {
+        return route == null ? "" : route.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        norm = Math.sqrt(norm);
+        if (norm == 0) return vector;
+
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    // Both vectors are unit length, so the dot product is the cosine similarity
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) return -1;
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record CachedAnswer(String route, float[] embedding, List<String> chunks) {
+    }
+}
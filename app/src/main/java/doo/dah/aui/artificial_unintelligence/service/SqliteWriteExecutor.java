@@ -0,0 +1,85 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one thread every SQLite write goes through. SQLite only allows a single writer, so
+ * serializing writes here keeps them from contending for the write lock and makes the
+ * wait for it visible as {@code sqlite.write.wait}.
+ */
+@Service
+public class SqliteWriteExecutor {
+    private final ExecutorService executor;
+    private final Timer waitTimer;
+    private final Timer writeTimer;
+    private volatile Thread writerThread;
+
+    public SqliteWriteExecutor(MeterRegistry meterRegistry) {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sqlite-writer");
+            thread.setDaemon(true);
+            writerThread = thread;
+            return thread;
+        });
+        this.waitTimer = meterRegistry.timer("sqlite.write.wait");
+        this.writeTimer = meterRegistry.timer("sqlite.write.duration");
+    }
+
+    /**
+     * Run a write on the writer thread and wait for it. Writes issued from the writer
+     * thread itself run inline so nested writes cannot deadlock.
+     */
+    public <T> T write(Callable<T> work) {
+        if (Thread.currentThread() == writerThread) {
+            return call(work);
+        }
+
+        long submitted = System.nanoTime();
+        Future<T> result = executor.submit(() -> {
+            waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            return call(work);
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a SQLite write", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void execute(Runnable work) {
+        write(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Let queued writes finish, callers flushing on shutdown depend on it
+        executor.shutdown();
+    }
+
+    private <T> T call(Callable<T> work) {
+        try {
+            return writeTimer.recordCallable(work);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts model streams that were cancelled before they finished, normally because the
+ * client went away, and estimates the tokens that were not generated as a result. The
+ * estimate is the running average length of completed streams minus what the cancelled
+ * stream had already produced.
+ */
+@Service
+public class StreamCancellationTracker {
+    // Weight of the newest completed stream in the average completion length
+    private static final double ALPHA = 0.1;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AverageLength> averages = new ConcurrentHashMap<>();
+
+    public StreamCancellationTracker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Track an upstream model stream; every element counts as one generated token
+     *
+     * @param endpoint tag identifying where the stream is served from
+     */
+    public <T> Flux<T> track(String endpoint, Flux<T> stream) {
+        return Flux.defer(() -> {
+            AtomicLong emitted = new AtomicLong();
+            AverageLength average = averages.computeIfAbsent(endpoint, key -> new AverageLength());
+            return stream
+                    .doOnNext(element -> emitted.incrementAndGet())
+                    .doOnComplete(() -> average.update(emitted.get()))
+                    .doOnCancel(() -> {
+                        long saved = Math.max(0, Math.round(average.value()) - emitted.get());
+                        meterRegistry.counter("chat.stream.cancelled", "endpoint", endpoint).increment();
+                        meterRegistry.counter("chat.stream.tokens.saved", "endpoint", endpoint).increment(saved);
+                        meterRegistry.counter("chat.stream.tokens.before.cancel", "endpoint", endpoint)
+                                .increment(emitted.get());
+                    });
+        });
+    }
+
+    private static final class AverageLength {
+        private double value;
+        private boolean initialized;
+
+        synchronized void update(long length) {
+            value = initialized ? value + ALPHA * (length - value) : length;
+            initialized = true;
+        }
+
+        synchronized double value() {
+            return value;
+        }
+    }
+}
@@ -13,11 +13,10 @@ import org.springframework.web.client.RestTemplate;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -31,7 +30,8 @@ public class WebCrawlerService {
     };
     private final RestTemplate restTemplate;
     private final DocumentProcessingService documentProcessingService;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5);
+    private final IngestionBulkhead ingestionBulkhead;
+    private final IngestionMetrics ingestionMetrics;
     // Patterns for URLs to skip
     private final List<Pattern> skipUrlPatterns = Arrays.asList(
             Pattern.compile(".*\\.(css|js|bmp|gif|jpe?g|png|tiff?|mid|mp2|mp3|mp4|wav|avi|mov|mpeg|ram|m4v|pdf|rm|smil|wmv|swf|wma|zip|rar|gz)$"),
@@ -86,7 +86,7 @@ public class WebCrawlerService {
                 errorResult.put("error", e.getMessage());
                 return errorResult;
             }
-        }, executorService);
+        }, ingestionBulkhead.executor());
     }
 
     /**
@@ -159,8 +159,9 @@ public class WebCrawlerService {
      * Fetch and parse a web page
      */
     private Document fetchPage(String url) {
-        String responseBody = restTemplate.getForObject(url, String.class);
+        String responseBody = ingestionMetrics.record("fetch", () -> restTemplate.getForObject(url, String.class));
         assert responseBody != null;
+        ingestionMetrics.recordBytes("fetch", responseBody.getBytes(StandardCharsets.UTF_8).length);
         return Jsoup.parse(responseBody, url);
     }
 
@@ -169,14 +170,14 @@ public class WebCrawlerService {
      * Process the content of a page, clean it and store in vector DB
      */
     private int processContent(String url, Document doc, String titleOverride, List<String> tags) {
-        // Remove unwanted elements
-        for (String elementTag : ELEMENTS_TO_REMOVE) {
-            doc.select(elementTag).remove();
-        }
-
-        // Extract clean text content
+        // Remove unwanted elements and extract clean text content
+        String cleanContent = ingestionMetrics.record("extract", () -> {
+            for (String elementTag : ELEMENTS_TO_REMOVE) {
+                doc.select(elementTag).remove();
+            }
+            return doc.body().text();
+        });
         String title = titleOverride != null ? titleOverride : doc.title();
-        String cleanContent = doc.body().text();
 
         // Skip if content is too small
         if (cleanContent.length() < 50) {
@@ -16,10 +16,6 @@ package doo.dah.aui.artificial_unintelligence.util;
  * limitations under the License.
  */
 
-import com.knuddels.jtokkit.Encodings;
-import com.knuddels.jtokkit.api.Encoding;
-import com.knuddels.jtokkit.api.EncodingRegistry;
-import com.knuddels.jtokkit.api.EncodingType;
 import com.knuddels.jtokkit.api.IntArrayList;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.util.Assert;
@@ -37,9 +33,6 @@ public class OverlappingTokenTextSplitter extends TokenTextSplitter {
 
     private static final int DEFAULT_CHUNK_OVERLAY = 0;
 
-    private final EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
-    private final Encoding encoding = this.registry.getEncoding(EncodingType.CL100K_BASE);
-
     // The number of tokens to overlay between chunks
     private final int chunkOverlay;
 
@@ -164,14 +157,14 @@ public class OverlappingTokenTextSplitter extends TokenTextSplitter {
 
     private List<Integer> getEncodedTokens(String text) {
         Assert.notNull(text, "Text must not be null");
-        return this.encoding.encode(text).boxed();
+        return TokenEncodings.cl100k().encode(text).boxed();
     }
 
     private String decodeTokens(List<Integer> tokens) {
         Assert.notNull(tokens, "Tokens must not be null");
         var tokensIntArray = new IntArrayList(tokens.size());
         tokens.forEach(tokensIntArray::add);
-        return this.encoding.decode(tokensIntArray);
+        return TokenEncodings.cl100k().decode(tokensIntArray);
     }
 
     /**
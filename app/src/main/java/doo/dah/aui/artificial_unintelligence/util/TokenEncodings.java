@@ -0,0 +1,25 @@
+package doo.dah.aui.artificial_unintelligence.util;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Shared token encodings. The BPE ranks are parsed on first use instead of when a
+ * splitter or advisor is constructed, and only once for the whole application.
+ */
+public final class TokenEncodings {
+
+    private TokenEncodings() {
+    }
+
+    public static Encoding cl100k() {
+        return Cl100kHolder.ENCODING;
+    }
+
+    // Loaded when the holder class is first touched
+    private static final class Cl100kHolder {
+        private static final Encoding ENCODING =
+                Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    }
+}
@@ -0,0 +1,187 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link VectorStore} decorator that caches similarity search results keyed by the
+ * normalized query, topK, similarity threshold and filter expression.
+ * <p>
+ * Every write (add or delete) bumps a generation counter and clears the cache, even when it
+ * fails. A search that started before a write will not publish its (possibly stale)
+ * results. A {@link KnowledgeBaseChangedEvent} is published for what the delegate actually
+ * stored or deleted, so other indexes can follow suit. Large deletes are sent to the
+ * delegate in batches but still count as one write.
+ */
+@Slf4j
+public class CachingVectorStore implements VectorStore {
+    private final VectorStore delegate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<SearchKey, CachedResult> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final int deleteBatchSize;
+
+    public CachingVectorStore(VectorStore delegate, Duration ttl, long maximumSize) {
+        this(delegate, ttl, maximumSize, event -> {
+        });
+    }
+
+    public CachingVectorStore(VectorStore delegate, Duration ttl, long maximumSize,
+                              ApplicationEventPublisher eventPublisher) {
+        this(delegate, ttl, maximumSize, eventPublisher, Integer.MAX_VALUE);
+    }
+
+    public CachingVectorStore(VectorStore delegate, Duration ttl, long maximumSize,
+                              ApplicationEventPublisher eventPublisher, int deleteBatchSize) {
+        if (deleteBatchSize < 1) {
+            throw new IllegalArgumentException("Delete batch size must be positive, was " + deleteBatchSize);
+        }
+        this.delegate = delegate;
+        this.eventPublisher = eventPublisher;
+        this.deleteBatchSize = deleteBatchSize;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        try {
+            delegate.add(documents);
+        } finally {
+            invalidateAll();
+        }
+        eventPublisher.publishEvent(KnowledgeBaseChangedEvent.added(documents));
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        int deleted = 0;
+        try {
+            for (int start = 0; start < idList.size(); start += deleteBatchSize) {
+                List<String> batch = idList.subList(start, Math.min(start + deleteBatchSize, idList.size()));
+                delegate.delete(new ArrayList<>(batch));
+                deleted = start + batch.size();
+                if (batch.size() < idList.size()) {
+                    log.info("Deleted batch of {} documents ({} of {})", batch.size(), deleted, idList.size());
+                }
+            }
+        } finally {
+            invalidateAll();
+            // Only the batches the delegate accepted are gone, a failed batch still exists remotely
+            if (deleted > 0) {
+                eventPublisher.publishEvent(KnowledgeBaseChangedEvent.deleted(List.copyOf(idList.subList(0, deleted))));
+            }
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        try {
+            delegate.delete(filterExpression);
+        } finally {
+            invalidateAll();
+        }
+        eventPublisher.publishEvent(KnowledgeBaseChangedEvent.deleted(filterExpression));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        SearchKey key = SearchKey.of(request);
+        long currentGeneration = generation.get();
+
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null && cached.generation() == currentGeneration) {
+            return new ArrayList<>(cached.documents());
+        }
+
+        List<Document> results = delegate.similaritySearch(request);
+        if (results != null && currentGeneration == generation.get()) {
+            cache.put(key, new CachedResult(currentGeneration, List.copyOf(results)));
+        }
+        return results;
+    }
+
+    /**
+     * Search the delegate without reading or filling the cache, for callers that need the
+     * real retrieval latency
+     */
+    public List<Document> similaritySearchUncached(SearchRequest request) {
+        return delegate.similaritySearch(request);
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+
+    /**
+     * Drop every cached result, e.g. after the knowledge base was modified
+     */
+    public void invalidateAll() {
+        long next = generation.incrementAndGet();
+        cache.invalidateAll();
+        log.debug("Invalidated similarity search cache, generation is now {}", next);
+    }
+
+    /**
+     * Register hit/miss/eviction meters for the cache
+     */
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "vector.search");
+    }
+
+    /**
+     * Snapshot of the cache statistics
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        return Map.of(
+                "size", cache.estimatedSize(),
+                "generation", generation.get(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictions", stats.evictionCount()
+        );
+    }
+
+    static String normalizeQuery(String query) {
+        if (query == null) return "";
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record SearchKey(String query, int topK, double similarityThreshold, String filter) {
+        static SearchKey of(SearchRequest request) {
+            Filter.Expression filter = request.getFilterExpression();
+            return new SearchKey(
+                    normalizeQuery(request.getQuery()),
+                    request.getTopK(),
+                    request.getSimilarityThreshold(),
+                    filter != null ? filter.toString() : ""
+            );
+        }
+    }
+
+    private record CachedResult(long generation, List<Document> documents) {
+    }
+}
@@ -0,0 +1,51 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import doo.dah.aui.artificial_unintelligence.service.DocumentCatalogService;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link VectorStore} decorator that reattaches document metadata from the local
+ * {@link DocumentCatalogService} to search results, so the vector records themselves
+ * only need to carry a compact document reference.
+ */
+public class CatalogVectorStore implements VectorStore {
+    private final VectorStore delegate;
+    private final DocumentCatalogService catalog;
+
+    public CatalogVectorStore(VectorStore delegate, DocumentCatalogService catalog) {
+        this.delegate = delegate;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        List<Document> results = delegate.similaritySearch(request);
+        return results != null ? catalog.hydrate(results) : null;
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+}
@@ -0,0 +1,201 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import doo.dah.aui.artificial_unintelligence.advisors.StageTimingAdvisor;
+import doo.dah.aui.artificial_unintelligence.embedding.EmbeddingStopwatch;
+import doo.dah.aui.artificial_unintelligence.service.DocumentCatalogService;
+import doo.dah.aui.artificial_unintelligence.service.LexicalIndexService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VectorStore} that answers similarity searches from both the vector store and the
+ * local BM25 index and fuses the two rankings with reciprocal rank fusion.
+ * <p>
+ * The vector search starts on a virtual thread while the lexical search runs on the caller.
+ * When the best lexical hit is a strong keyword match, scoring at least
+ * {@code fastPathMinScore} BM25 and {@code fastPathMinMargin} times the runner-up, the
+ * lexical hits are returned without waiting and the vector search is cancelled. Lexical
+ * hits get their catalog metadata reattached like vector hits do. Writes go straight to
+ * the delegate.
+ * <p>
+ * BM25 and cosine scores are not comparable, so every returned document is scored with
+ * its normalized fusion score, 1.0 for a document ranked first by every search that ran.
+ * The cosine similarity of documents the vector search found is kept in the
+ * {@link #VECTOR_SCORE} metadata field.
+ * <p>
+ * The query embedding and the rest of the vector search are timed as the {@code embedding}
+ * and {@code vector-search} chat stages. Without an embedding model reporting to an
+ * {@link EmbeddingStopwatch}, {@code vector-search} includes the embedding.
+ */
+@Slf4j
+public class HybridSearchVectorStore implements VectorStore, AutoCloseable {
+    // Metadata key holding the vector search similarity, absent for lexical-only hits
+    public static final String VECTOR_SCORE = "vector_score";
+
+    // Standard RRF damping constant, keeps a single top rank from dominating the fusion
+    private static final int RRF_K = 60;
+
+    private final VectorStore delegate;
+    private final LexicalIndexService lexicalIndex;
+    private final DocumentCatalogService catalog;
+    private final double fastPathMinScore;
+    private final double fastPathMinMargin;
+    private final ExecutorService executor;
+    private final Timer embeddingTimer;
+    private final Timer vectorSearchTimer;
+
+    public HybridSearchVectorStore(VectorStore delegate, LexicalIndexService lexicalIndex,
+                                   DocumentCatalogService catalog, double fastPathMinScore,
+                                   double fastPathMinMargin, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.lexicalIndex = lexicalIndex;
+        this.catalog = catalog;
+        this.fastPathMinScore = fastPathMinScore;
+        this.fastPathMinMargin = fastPathMinMargin;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("hybrid-vector-search-", 0).factory());
+        this.embeddingTimer = Timer.builder(StageTimingAdvisor.TIMER).tag("advisor", "embedding").register(meterRegistry);
+        this.vectorSearchTimer = Timer.builder(StageTimingAdvisor.TIMER).tag("advisor", "vector-search").register(meterRegistry);
+    }
+
+    /**
+     * Fuse several rankings, best first. Documents are matched by id; the first ranking
+     * that contains a document provides its text and metadata. The returned copies carry
+     * the fusion score divided by its maximum, so scores fall in (0, 1].
+     */
+    static List<Document> reciprocalRankFusion(List<List<Document>> rankings, int topK) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document doc = ranking.get(rank);
+                scores.merge(doc.getId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+                documents.putIfAbsent(doc.getId(), doc);
+            }
+        }
+        double maxScore = rankings.size() / (RRF_K + 1.0);
+        return documents.values().stream()
+                .sorted(Comparator.comparingDouble((Document doc) -> scores.get(doc.getId())).reversed())
+                .limit(topK)
+                .map(doc -> rescored(doc, scores.get(doc.getId()) / maxScore))
+                .toList();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        // The lexical index cannot evaluate metadata filters
+        if (request.hasFilterExpression()) {
+            return timedVectorSearch(request);
+        }
+
+        String query = request.getQuery();
+        int topK = request.getTopK();
+        CompletableFuture<List<Document>> vectorSearch = CompletableFuture.supplyAsync(
+                () -> Optional.ofNullable(timedVectorSearch(request)).orElseGet(ArrayList::new), executor);
+        List<Document> lexical = lexicalSearch(query, topK);
+        if (isStrongKeywordMatch(lexical)) {
+            vectorSearch.cancel(true);
+            log.debug("Lexical fast path answered '{}' with a top BM25 score of {}", query, lexical.get(0).getScore());
+            return reciprocalRankFusion(List.of(catalog.hydrate(lexical)), topK);
+        }
+
+        List<Document> vector = awaitVectorSearch(vectorSearch).stream()
+                .map(HybridSearchVectorStore::withVectorScore)
+                .toList();
+        return reciprocalRankFusion(List.of(vector, catalog.hydrate(lexical)), topK);
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // The stopwatch is per thread, so it only sees the embedding of this query
+    private List<Document> timedVectorSearch(SearchRequest request) {
+        EmbeddingStopwatch embedding = new EmbeddingStopwatch();
+        long started = System.nanoTime();
+        try {
+            return embedding.call(() -> delegate.similaritySearch(request));
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            if (embedding.nanos() > 0) embeddingTimer.record(embedding.nanos(), TimeUnit.NANOSECONDS);
+            vectorSearchTimer.record(Math.max(0, elapsed - embedding.nanos()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Rethrows the delegate's own exception rather than the CompletionException wrapping it
+    private static List<Document> awaitVectorSearch(CompletableFuture<List<Document>> vectorSearch) {
+        try {
+            return vectorSearch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private List<Document> lexicalSearch(String query, int topK) {
+        try {
+            return lexicalIndex.search(query, topK, false);
+        } catch (RuntimeException e) {
+            log.warn("Lexical search failed, using vector results only: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // Hits are best first; a lone hit only has to clear the score
+    boolean isStrongKeywordMatch(List<Document> lexical) {
+        if (lexical.isEmpty() || lexical.get(0).getScore() == null) return false;
+        double top = lexical.get(0).getScore();
+        if (top < fastPathMinScore) return false;
+        if (lexical.size() == 1 || lexical.get(1).getScore() == null || lexical.get(1).getScore() <= 0) return true;
+        return top >= fastPathMinMargin * lexical.get(1).getScore();
+    }
+
+    private static Document withVectorScore(Document doc) {
+        if (doc.getScore() == null) return doc;
+        Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+        metadata.put(VECTOR_SCORE, doc.getScore());
+        return Document.builder().id(doc.getId()).text(doc.getText()).metadata(metadata).score(doc.getScore()).build();
+    }
+
+    private static Document rescored(Document doc, double score) {
+        return Document.builder().id(doc.getId()).text(doc.getText()).metadata(doc.getMetadata()).score(score).build();
+    }
+}
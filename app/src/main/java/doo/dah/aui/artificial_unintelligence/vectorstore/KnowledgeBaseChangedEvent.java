@@ -0,0 +1,28 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.List;
+
+/**
+ * Published after documents were added to or deleted from the vector store.
+ * Only one of the payload fields is populated per event.
+ */
+public record KnowledgeBaseChangedEvent(
+        List<Document> addedDocuments,
+        List<String> deletedIds,
+        Filter.Expression deleteFilter
+) {
+    public static KnowledgeBaseChangedEvent added(List<Document> documents) {
+        return new KnowledgeBaseChangedEvent(documents, List.of(), null);
+    }
+
+    public static KnowledgeBaseChangedEvent deleted(List<String> ids) {
+        return new KnowledgeBaseChangedEvent(List.of(), ids, null);
+    }
+
+    public static KnowledgeBaseChangedEvent deleted(Filter.Expression filter) {
+        return new KnowledgeBaseChangedEvent(List.of(), List.of(), filter);
+    }
+}
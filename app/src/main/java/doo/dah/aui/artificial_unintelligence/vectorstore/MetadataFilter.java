@@ -0,0 +1,86 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Evaluates a portable filter expression against a metadata map, for local indexes that
+ * mirror the vector store. Follows Pinecone's semantics: a list-valued field matches when
+ * any of its elements does, and a missing field only matches {@code !=} and {@code nin}.
+ */
+public final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    public static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            return false;
+        }
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            default -> compare(expression, metadata);
+        };
+    }
+
+    private static boolean compare(Filter.Expression expression, Map<String, Object> metadata) {
+        if (!(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value value)) {
+            return false;
+        }
+        Object actual = metadata.get(unquote(key.key()));
+        List<?> candidates = actual instanceof Collection<?> collection ? List.copyOf(collection)
+                : actual == null ? List.of() : List.of(actual);
+        Object expected = value.value();
+
+        return switch (expression.type()) {
+            case EQ -> candidates.stream().anyMatch(candidate -> equal(candidate, expected));
+            case NE -> candidates.stream().noneMatch(candidate -> equal(candidate, expected));
+            case IN -> candidates.stream().anyMatch(candidate -> values(expected).stream()
+                    .anyMatch(option -> equal(candidate, option)));
+            case NIN -> candidates.stream().noneMatch(candidate -> values(expected).stream()
+                    .anyMatch(option -> equal(candidate, option)));
+            case GT -> candidates.stream().anyMatch(candidate -> ordered(candidate, expected, order -> order > 0));
+            case GTE -> candidates.stream().anyMatch(candidate -> ordered(candidate, expected, order -> order >= 0));
+            case LT -> candidates.stream().anyMatch(candidate -> ordered(candidate, expected, order -> order < 0));
+            case LTE -> candidates.stream().anyMatch(candidate -> ordered(candidate, expected, order -> order <= 0));
+            default -> false;
+        };
+    }
+
+    private static List<?> values(Object value) {
+        return value instanceof List<?> list ? list : List.of(value);
+    }
+
+    private static boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return a.doubleValue() == b.doubleValue();
+        }
+        return Objects.equals(String.valueOf(actual), String.valueOf(expected));
+    }
+
+    // Numbers compare numerically, anything else as strings; a number and a string never match
+    private static boolean ordered(Object actual, Object expected, IntPredicate test) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return test.test(Double.compare(a.doubleValue(), b.doubleValue()));
+        }
+        if (actual instanceof Number || expected instanceof Number) {
+            return false;
+        }
+        return test.test(String.valueOf(actual).compareTo(String.valueOf(expected)));
+    }
+
+    private static String unquote(String key) {
+        return key.length() > 1 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\""))
+                ? key.substring(1, key.length() - 1) : key;
+    }
+}
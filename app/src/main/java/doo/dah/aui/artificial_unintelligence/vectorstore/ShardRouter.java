@@ -0,0 +1,115 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import doo.dah.aui.artificial_unintelligence.service.LexicalIndexService;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.*;
+
+/**
+ * Decides which shards a document is stored in and which shards a search has to visit.
+ * <p>
+ * Documents go to the first of their tags that names a shard, otherwise to the default
+ * shard. Searches use explicit hints first ({@code tags == 'merch'} or {@code tags in [...]}
+ * filters, on their own or ANDed with other conditions), then a keyword classifier over the
+ * query terms; the default shard is always searched as well. Filters that use tags under an OR
+ * or NOT fan out to every shard. Keywords match whole terms (a trailing plural {@code s} is
+ * ignored), so "hat" does not match "what". Queries that match no keyword fan out to every shard.
+ */
+public class ShardRouter {
+    private final String defaultShard;
+    private final Map<String, List<String>> keywordsByShard;
+
+    public ShardRouter(String defaultShard, Map<String, List<String>> keywordsByShard) {
+        if (keywordsByShard.containsKey(defaultShard)) {
+            throw new IllegalArgumentException("Default shard '" + defaultShard
+                    + "' must not also be configured as a keyword shard");
+        }
+        this.defaultShard = defaultShard;
+        this.keywordsByShard = new LinkedHashMap<>();
+        keywordsByShard.forEach((shard, keywords) -> this.keywordsByShard.put(shard,
+                keywords.stream().map(keyword -> keyword.toLowerCase(Locale.ROOT)).toList()));
+    }
+
+    public Set<String> shards() {
+        Set<String> shards = new LinkedHashSet<>();
+        shards.add(defaultShard);
+        shards.addAll(keywordsByShard.keySet());
+        return shards;
+    }
+
+    public String shardFor(Document document) {
+        if (document.getMetadata().get("tags") instanceof Collection<?> tags) {
+            for (Object tag : tags) {
+                if (keywordsByShard.containsKey(String.valueOf(tag))) {
+                    return String.valueOf(tag);
+                }
+            }
+        }
+        return defaultShard;
+    }
+
+    public Set<String> route(SearchRequest request) {
+        Set<String> selected = new LinkedHashSet<>();
+        if (request.getFilterExpression() != null && !collectTagHints(request.getFilterExpression(), selected)) {
+            return shards();
+        }
+        if (selected.isEmpty()) {
+            List<String> terms = LexicalIndexService.terms(request.getQuery());
+            keywordsByShard.forEach((shard, keywords) -> {
+                if (terms.stream().anyMatch(term -> matches(keywords, term))) {
+                    selected.add(shard);
+                }
+            });
+        }
+        if (selected.isEmpty()) {
+            return shards();
+        }
+        selected.add(defaultShard);
+        return selected;
+    }
+
+    private static boolean matches(List<String> keywords, String term) {
+        return keywords.contains(term)
+                || (term.length() > 1 && term.endsWith("s") && keywords.contains(term.substring(0, term.length() - 1)));
+    }
+
+    // Only hints every match must satisfy narrow the search: the filter itself or an AND conjunct.
+    // Returns false when tags appear under OR or NOT, where matches can live in any shard.
+    private boolean collectTagHints(Filter.Operand operand, Set<String> selected) {
+        if (operand instanceof Filter.Group group) {
+            return collectTagHints(group.content(), selected);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            return true;
+        }
+        if (expression.type() == Filter.ExpressionType.AND) {
+            return collectTagHints(expression.left(), selected) & collectTagHints(expression.right(), selected);
+        }
+        if (expression.type() == Filter.ExpressionType.OR || expression.type() == Filter.ExpressionType.NOT) {
+            return !mentionsTags(expression);
+        }
+        if (expression.left() instanceof Filter.Key key && "tags".equals(key.key())
+                && expression.right() instanceof Filter.Value value
+                && (expression.type() == Filter.ExpressionType.EQ || expression.type() == Filter.ExpressionType.IN)) {
+            List<?> values = value.value() instanceof List<?> list ? list : List.of(value.value());
+            values.stream()
+                    .map(String::valueOf)
+                    .filter(keywordsByShard::containsKey)
+                    .forEach(selected::add);
+        }
+        return true;
+    }
+
+    private static boolean mentionsTags(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return mentionsTags(group.content());
+        }
+        if (operand instanceof Filter.Key key) {
+            return "tags".equals(key.key());
+        }
+        return operand instanceof Filter.Expression expression
+                && (mentionsTags(expression.left()) || (expression.right() != null && mentionsTags(expression.right())));
+    }
+}
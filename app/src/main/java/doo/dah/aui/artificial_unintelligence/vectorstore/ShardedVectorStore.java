@@ -0,0 +1,88 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * {@link VectorStore} spread over several sub-stores (Pinecone namespaces). Writes are
+ * routed by tag, searches visit only the shards picked by the {@link ShardRouter}, in
+ * parallel, and the hits are merged by score into a single topK.
+ */
+@Slf4j
+public class ShardedVectorStore implements VectorStore, AutoCloseable {
+    private final Map<String, VectorStore> shards;
+    private final ShardRouter router;
+    private final ExecutorService executor;
+
+    public ShardedVectorStore(Map<String, VectorStore> shards, ShardRouter router) {
+        this.shards = Map.copyOf(shards);
+        this.router = router;
+        this.executor = Executors.newFixedThreadPool(Math.max(2, shards.size() * 2));
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        Map<String, List<Document>> byShard = documents.stream()
+                .collect(Collectors.groupingBy(router::shardFor, LinkedHashMap::new, Collectors.toList()));
+        byShard.forEach((shard, docs) -> shard(shard).add(docs));
+    }
+
+    // A chunk id does not tell which shard holds it, so deletes go everywhere
+    @Override
+    public void delete(List<String> idList) {
+        onAllShards(store -> store.delete(idList));
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        onAllShards(store -> store.delete(filterExpression));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Set<String> selected = router.route(request);
+        log.debug("Routing search '{}' to shards {}", request.getQuery(), selected);
+
+        List<CompletableFuture<List<Document>>> searches = selected.stream()
+                .map(shard -> CompletableFuture.supplyAsync(
+                        () -> Optional.ofNullable(shard(shard).similaritySearch(request)).orElseGet(List::of),
+                        executor))
+                .toList();
+
+        return searches.stream()
+                .flatMap(search -> search.join().stream())
+                .sorted(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(request.getTopK())
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private VectorStore shard(String name) {
+        VectorStore store = shards.get(name);
+        if (store == null) {
+            throw new IllegalStateException("No vector store configured for shard " + name);
+        }
+        return store;
+    }
+
+    private void onAllShards(Consumer<VectorStore> operation) {
+        CompletableFuture.allOf(shards.values().stream()
+                        .map(store -> CompletableFuture.runAsync(() -> operation.accept(store), executor))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+    }
+}
@@ -0,0 +1,114 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ContextPackingAdvisorTest {
+
+    @Test
+    void documentsArePackedBestFirstWithinTheirShare() {
+        // 99 tokens left after the question, documents get 49 of them
+        ContextPackingAdvisor advisor = new ContextPackingAdvisor(100, 0.5, 0.8);
+        Document best = document(repeat("apple", 30), 0.9);
+        Document tooLong = document(repeat("banana", 30), 0.8);
+        Document shortOne = document("cherry pie is tasty", 0.7);
+
+        AdvisedRequest packed = advisor.pack(request(List.of(), List.of(shortOne, tooLong, best)));
+
+        assertThat(packedDocuments(packed)).containsExactly(best, shortOne);
+        assertThat(packed.userParams().get(ContextPackingAdvisor.QUESTION_ANSWER_CONTEXT))
+                .isEqualTo(best.getText() + System.lineSeparator() + shortOne.getText());
+    }
+
+    @Test
+    void nearDuplicatesAreDropped() {
+        ContextPackingAdvisor advisor = new ContextPackingAdvisor(1000, 0.5, 0.8);
+        Document original = document("the parade starts at noon on main street", 0.9);
+        Document duplicate = document("the parade starts at noon on main street today", 0.8);
+        Document different = document("parking opens two hours before the parade", 0.7);
+
+        AdvisedRequest packed = advisor.pack(request(List.of(), List.of(original, duplicate, different)));
+
+        assertThat(packedDocuments(packed)).containsExactly(original, different);
+    }
+
+    @Test
+    void theOldestHistoryIsTrimmedFirst() {
+        // 19 tokens left after the question, room for two 8 token messages
+        ContextPackingAdvisor advisor = new ContextPackingAdvisor(20, 0.5, 0.8);
+        Message oldest = new UserMessage(repeat("one", 8));
+        Message middle = new AssistantMessage(repeat("two", 8));
+        Message newest = new UserMessage(repeat("three", 8));
+
+        AdvisedRequest packed = advisor.pack(request(List.of(oldest, middle, newest), List.of()));
+
+        assertThat(packed.messages()).containsExactly(middle, newest);
+    }
+
+    @Test
+    void packedDocumentsReplaceTheRetrievedOnesInTheContext() {
+        ContextPackingAdvisor advisor = new ContextPackingAdvisor(100, 0.5, 0.8);
+        Document kept = document("cherry pie is tasty", 0.9);
+        Document dropped = document(repeat("banana", 60), 0.8);
+
+        AdvisedRequest packed = advisor.pack(request(List.of(), List.of(kept, dropped)));
+
+        assertThat(packed.adviseContext().get(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS)).isEqualTo(List.of(kept));
+        assertThat(packed.adviseContext().get(ContextPackingAdvisor.PACKED_DOCUMENTS)).isEqualTo(List.of(kept));
+    }
+
+    @Test
+    void requestsWithoutRetrievalOnlyHaveTheirHistoryPacked() {
+        ContextPackingAdvisor advisor = new ContextPackingAdvisor(100, 0.5, 0.8);
+        AdvisedRequest request = AdvisedRequest.builder()
+                .chatModel(mock(ChatModel.class))
+                .userText("q")
+                .messages(List.of(new UserMessage("hello")))
+                .build();
+
+        AdvisedRequest packed = advisor.pack(request);
+
+        assertThat(packed.messages()).hasSize(1);
+        assertThat(packed.userParams()).doesNotContainKey(ContextPackingAdvisor.QUESTION_ANSWER_CONTEXT);
+        assertThat(packed.adviseContext()).doesNotContainKey(ContextPackingAdvisor.PACKED_DOCUMENTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> packedDocuments(AdvisedRequest request) {
+        return (List<Document>) request.adviseContext().get(ContextPackingAdvisor.PACKED_DOCUMENTS);
+    }
+
+    private static AdvisedRequest request(List<Message> history, List<Document> retrieved) {
+        Map<String, Object> context = new HashMap<>();
+        context.put(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, retrieved);
+        return AdvisedRequest.builder()
+                .chatModel(mock(ChatModel.class))
+                .userText("q")
+                .messages(history)
+                .userParams(Map.of(ContextPackingAdvisor.QUESTION_ANSWER_CONTEXT, ""))
+                .adviseContext(context)
+                .build();
+    }
+
+    private static Document document(String text, double score) {
+        return Document.builder().text(text).score(score).build();
+    }
+
+    private static String repeat(String word, int times) {
+        return String.join(" ", Collections.nCopies(times, word));
+    }
+}
@@ -0,0 +1,140 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import doo.dah.aui.artificial_unintelligence.config.ModelRoutingProperties;
+import doo.dah.aui.artificial_unintelligence.vectorstore.HybridSearchVectorStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ModelRoutingAdvisorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRoutingProperties properties = new ModelRoutingProperties();
+    private final ModelRoutingAdvisor advisor = new ModelRoutingAdvisor(properties, meterRegistry);
+
+    {
+        properties.setSmallModel("llama3.2:1b");
+        properties.setLargeModel("llama3.1:8b");
+    }
+
+    @Test
+    void shortQuestionsWithoutContextGoSmall() {
+        assertThat(routedModel(request("How do I donate?", List.of(), Map.of()))).isEqualTo("llama3.2:1b");
+        assertThat(routeCount("small", "simple")).isEqualTo(1);
+    }
+
+    @Test
+    void anOverrideWinsOverEveryHeuristic() {
+        String longQuestion = "word ".repeat(50);
+
+        assertThat(routedModel(request(longQuestion, List.of(), Map.of(ModelRoutingAdvisor.ROUTE_KEY, "SMALL"))))
+                .isEqualTo("llama3.2:1b");
+        assertThat(routedModel(request("Hi", List.of(), Map.of(ModelRoutingAdvisor.ROUTE_KEY, "large"))))
+                .isEqualTo("llama3.1:8b");
+        assertThat(routeCount("small", "override")).isEqualTo(1);
+        assertThat(routeCount("large", "override")).isEqualTo(1);
+    }
+
+    @Test
+    void longQuestionsGoLarge() {
+        properties.setMaxSimpleWords(3);
+
+        assertThat(routedModel(request("one two three four", List.of(), Map.of()))).isEqualTo("llama3.1:8b");
+        assertThat(routeCount("large", "length")).isEqualTo(1);
+    }
+
+    @Test
+    void lengthIsMeasuredOnTheTypedQuestionNotTheAugmentedPrompt() {
+        properties.setMaxSimpleWords(3);
+        AdvisedRequest request = request("one two three four five six", List.of(),
+                Map.of(ModelRoutingAdvisor.QUESTION_KEY, "one two"));
+
+        assertThat(routedModel(request)).isEqualTo("llama3.2:1b");
+    }
+
+    @Test
+    void deepConversationsGoLarge() {
+        properties.setMaxSimpleHistory(2);
+        List<Message> history = IntStream.range(0, 3)
+                .<Message>mapToObj(i -> new UserMessage("earlier " + i))
+                .toList();
+
+        assertThat(routedModel(request("Hi", history, Map.of()))).isEqualTo("llama3.1:8b");
+        assertThat(routeCount("large", "depth")).isEqualTo(1);
+    }
+
+    @Test
+    void weakVectorMatchesGoLargeWhateverTheFusedScore() {
+        // A top RRF score is well above any similarity threshold but says nothing about relevance
+        Document weak = retrieved(1.0, 0.4);
+
+        assertThat(routedModel(request("Hi", List.of(), Map.of(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, List.of(weak)))))
+                .isEqualTo("llama3.1:8b");
+        assertThat(routeCount("large", "retrieval")).isEqualTo(1);
+    }
+
+    @Test
+    void strongVectorMatchesGoSmall() {
+        List<Document> docs = List.of(retrieved(0.5, 0.4), retrieved(0.4, 0.9));
+
+        assertThat(routedModel(request("Hi", List.of(), Map.of(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, docs))))
+                .isEqualTo("llama3.2:1b");
+    }
+
+    @Test
+    void keywordOnlyMatchesCountAsConfident() {
+        Document keywordHit = Document.builder().text("chunk").score(14.0).build();
+
+        assertThat(routedModel(request("Hi", List.of(), Map.of(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, List.of(keywordHit)))))
+                .isEqualTo("llama3.2:1b");
+    }
+
+    @Test
+    void requestsPassThroughWithoutASmallModel() {
+        properties.setSmallModel("");
+        AdvisedRequest request = request("Hi", List.of(), Map.of());
+
+        assertThat(advisor.route(request)).isSameAs(request);
+    }
+
+    private String routedModel(AdvisedRequest request) {
+        return ((OllamaOptions) advisor.route(request).chatOptions()).getModel();
+    }
+
+    private double routeCount(String tier, String reason) {
+        return meterRegistry.find("chat.model.route").tag("tier", tier).tag("reason", reason).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static Document retrieved(double fusedScore, double vectorScore) {
+        return Document.builder()
+                .text("chunk")
+                .metadata(HybridSearchVectorStore.VECTOR_SCORE, vectorScore)
+                .score(fusedScore)
+                .build();
+    }
+
+    private static AdvisedRequest request(String userText, List<Message> history, Map<String, Object> context) {
+        return AdvisedRequest.builder()
+                .chatModel(mock(ChatModel.class))
+                .userText(userText)
+                .messages(history)
+                .adviseContext(new HashMap<>(context))
+                .build();
+    }
+}
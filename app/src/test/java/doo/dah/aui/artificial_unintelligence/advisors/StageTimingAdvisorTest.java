@@ -0,0 +1,72 @@
+package doo.dah.aui.artificial_unintelligence.advisors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StageTimingAdvisorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<AdvisedRequest> passedOn = new AtomicReference<>();
+    private final CallAroundAdvisorChain chain = mock(CallAroundAdvisorChain.class);
+
+    {
+        when(chain.nextAroundCall(any())).thenAnswer(invocation -> {
+            passedOn.set(invocation.getArgument(0));
+            return null;
+        });
+    }
+
+    @Test
+    void eachMarkerRecordsTheTimeSinceThePreviousOne() throws InterruptedException {
+        StageTimingAdvisor start = new StageTimingAdvisor(null, Ordered.HIGHEST_PRECEDENCE, meterRegistry);
+        StageTimingAdvisor memory = new StageTimingAdvisor("memory", 1, meterRegistry);
+        StageTimingAdvisor retrieval = new StageTimingAdvisor("retrieval", 5, meterRegistry);
+
+        start.aroundCall(request(), chain);
+        Thread.sleep(20);
+        memory.aroundCall(passedOn.get(), chain);
+        Thread.sleep(5);
+        retrieval.aroundCall(passedOn.get(), chain);
+
+        assertThat(meterRegistry.get(StageTimingAdvisor.TIMER).tag("advisor", "memory").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        // The retrieval lap starts where the memory lap ended
+        assertThat(meterRegistry.get(StageTimingAdvisor.TIMER).tag("advisor", "retrieval").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void theFirstMarkerOnlyStartsTheClock() {
+        new StageTimingAdvisor(null, Ordered.HIGHEST_PRECEDENCE, meterRegistry).aroundCall(request(), chain);
+
+        assertThat(meterRegistry.find(StageTimingAdvisor.TIMER).timers()).isEmpty();
+        assertThat(passedOn.get().adviseContext()).hasSize(1);
+    }
+
+    @Test
+    void aMarkerWithoutAClockStartsOneInsteadOfRecording() {
+        StageTimingAdvisor memory = new StageTimingAdvisor("memory", 1, meterRegistry);
+
+        memory.aroundCall(request(), chain);
+        memory.aroundCall(passedOn.get(), chain);
+
+        assertThat(meterRegistry.get(StageTimingAdvisor.TIMER).tag("advisor", "memory").timer().count())
+                .isEqualTo(1);
+    }
+
+    private static AdvisedRequest request() {
+        return AdvisedRequest.builder().chatModel(mock(ChatModel.class)).userText("q").build();
+    }
+}
@@ -0,0 +1,89 @@
+package doo.dah.aui.artificial_unintelligence.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SQLiteConfigTest {
+
+    @TempDir
+    Path directory;
+
+    private final SQLiteConfig config = new SQLiteConfig();
+    private HikariDataSource writePool;
+    private HikariDataSource readPool;
+
+    @BeforeEach
+    void openPools() throws SQLException {
+        ReflectionTestUtils.setField(config, "url", "jdbc:sqlite:" + directory.resolve("test.db"));
+        ReflectionTestUtils.setField(config, "readPoolSize", 3);
+        ReflectionTestUtils.setField(config, "busyTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "synchronous", "NORMAL");
+        ReflectionTestUtils.setField(config, "cacheSize", -20000);
+        ReflectionTestUtils.setField(config, "mmapSize", 268435456L);
+
+        writePool = config.sqliteWriteDataSource();
+        // A read-only connection cannot create the database file
+        try (Connection connection = writePool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE note (text TEXT)");
+        }
+        readPool = config.sqliteReadDataSource();
+    }
+
+    @AfterEach
+    void closePools() {
+        if (readPool != null) readPool.close();
+        if (writePool != null) writePool.close();
+    }
+
+    @Test
+    void connectionsUseTheConfiguredPragmas() throws SQLException {
+        for (HikariDataSource pool : new HikariDataSource[]{writePool, readPool}) {
+            assertThat(pragma(pool, "journal_mode")).isEqualToIgnoringCase("wal");
+            assertThat(pragma(pool, "busy_timeout")).isEqualTo("5000");
+            // 1 is NORMAL
+            assertThat(pragma(pool, "synchronous")).isEqualTo("1");
+            assertThat(pragma(pool, "cache_size")).isEqualTo("-20000");
+        }
+    }
+
+    @Test
+    void thereIsOneWriterAndAReadOnlyReadPool() throws SQLException {
+        assertThat(writePool.getMaximumPoolSize()).isEqualTo(1);
+        assertThat(writePool.isReadOnly()).isFalse();
+        assertThat(readPool.getMaximumPoolSize()).isEqualTo(3);
+        assertThat(readPool.getMinimumIdle()).isEqualTo(3);
+        assertThat(readPool.isReadOnly()).isTrue();
+
+        try (Connection connection = readPool.getConnection(); Statement statement = connection.createStatement()) {
+            assertThatThrownBy(() -> statement.execute("INSERT INTO note VALUES ('nope')"))
+                    .isInstanceOf(SQLException.class);
+            try (ResultSet rows = statement.executeQuery("SELECT count(*) FROM note")) {
+                assertThat(rows.next()).isTrue();
+                assertThat(rows.getInt(1)).isZero();
+            }
+        }
+    }
+
+    private static String pragma(HikariDataSource pool, String name) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA " + name)) {
+            assertThat(result.next()).isTrue();
+            return result.getString(1);
+        }
+    }
+}
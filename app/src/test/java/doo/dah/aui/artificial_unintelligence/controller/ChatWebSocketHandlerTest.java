@@ -0,0 +1,170 @@
+package doo.dah.aui.artificial_unintelligence.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import doo.dah.aui.artificial_unintelligence.service.ChatService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatService chatService = mock(ChatService.class);
+    private final JwtDecoder jwtDecoder = mock(JwtDecoder.class);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final List<JsonNode> sent = new CopyOnWriteArrayList<>();
+    private final ChatWebSocketHandler handler = new ChatWebSocketHandler(chatService, jwtDecoder, objectMapper);
+
+    @BeforeEach
+    void connect() throws Exception {
+        ReflectionTestUtils.setField(handler, "frameMaxTokens", 16);
+        ReflectionTestUtils.setField(handler, "frameWindow", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(handler, "maxStreamsPerSession", 4);
+        ReflectionTestUtils.setField(handler, "sendTimeLimit", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(handler, "sendBufferLimit", 512 * 1024);
+
+        when(session.getId()).thenReturn("session-1");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        doAnswer(invocation -> {
+            sent.add(objectMapper.readTree(invocation.<TextMessage>getArgument(0).getPayload()));
+            return null;
+        }).when(session).sendMessage(any(WebSocketMessage.class));
+        when(jwtDecoder.decode("alice-token")).thenReturn(jwt("alice", Instant.now().plusSeconds(3600)));
+
+        handler.afterConnectionEstablished(session);
+    }
+
+    @Test
+    void theFirstFrameMustAuthenticate() throws Exception {
+        frame("{\"type\":\"chat\",\"id\":\"1\",\"question\":\"hi\"}");
+
+        assertThat(sent).singleElement().satisfies(frame -> {
+            assertThat(frame.path("type").asText()).isEqualTo("error");
+            assertThat(frame.path("message").asText()).isEqualTo("Not authenticated");
+        });
+        verify(session).close(CloseStatus.POLICY_VIOLATION);
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void invalidTokensDoNotAuthenticate() throws Exception {
+        when(jwtDecoder.decode("forged")).thenThrow(new BadJwtException("bad signature"));
+
+        frame("{\"type\":\"auth\",\"token\":\"forged\"}");
+        frame("{\"type\":\"chat\",\"id\":\"1\",\"question\":\"hi\"}");
+
+        assertThat(sent).extracting(frame -> frame.path("message").asText())
+                .containsExactly("Invalid token", "Not authenticated");
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void anExpiredTokenClosesTheConnection() throws Exception {
+        when(jwtDecoder.decode("stale-token")).thenReturn(jwt("alice", Instant.now().minusSeconds(1)));
+
+        frame("{\"type\":\"auth\",\"token\":\"stale-token\"}");
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                verify(session).close(argThat(status -> status.getCode() == CloseStatus.POLICY_VIOLATION.getCode())));
+    }
+
+    @Test
+    void concurrentChatsAreToldApartByTheirIds() throws Exception {
+        when(chatService.streamResponse(eq("first"), any(), eq("alice"), any())).thenReturn(Flux.just("a", "b"));
+        when(chatService.streamResponse(eq("second"), any(), eq("alice"), any())).thenReturn(Flux.just("c"));
+        authenticate();
+
+        frame("{\"type\":\"chat\",\"id\":\"1\",\"question\":\"first\"}");
+        frame("{\"type\":\"chat\",\"id\":\"2\",\"question\":\"second\"}");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> framesOfType("done").size() == 2);
+        assertThat(text("1")).isEqualTo("ab");
+        assertThat(text("2")).isEqualTo("c");
+    }
+
+    @Test
+    void cancellingAChatDisposesItsStream() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        when(chatService.streamResponse(anyString(), any(), eq("alice"), any()))
+                .thenReturn(Flux.<String>never().doOnCancel(cancelled::incrementAndGet));
+        authenticate();
+
+        frame("{\"type\":\"chat\",\"id\":\"1\",\"question\":\"long answer\"}");
+        frame("{\"type\":\"cancel\",\"id\":\"1\"}");
+
+        assertThat(cancelled).hasValue(1);
+        assertThat(framesOfType("done")).isEmpty();
+    }
+
+    @Test
+    void closingTheConnectionDisposesEveryStream() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        when(chatService.streamResponse(anyString(), any(), eq("alice"), any()))
+                .thenAnswer(invocation -> Flux.<String>never().doOnCancel(cancelled::incrementAndGet));
+        authenticate();
+        frame("{\"type\":\"chat\",\"id\":\"1\",\"question\":\"one\"}");
+        frame("{\"type\":\"chat\",\"id\":\"2\",\"question\":\"two\"}");
+
+        handler.afterConnectionClosed(session, CloseStatus.GOING_AWAY);
+
+        assertThat(cancelled).hasValue(2);
+    }
+
+    private void authenticate() throws Exception {
+        frame("{\"type\":\"auth\",\"token\":\"alice-token\"}");
+        assertThat(framesOfType("authenticated")).hasSize(1);
+    }
+
+    private void frame(String json) throws Exception {
+        handler.handleMessage(session, new TextMessage(json));
+    }
+
+    private List<JsonNode> framesOfType(String type) {
+        return sent.stream().filter(frame -> frame.path("type").asText().equals(type)).toList();
+    }
+
+    private String text(String id) {
+        StringBuilder text = new StringBuilder();
+        framesOfType("token").stream()
+                .filter(frame -> frame.path("id").asText().equals(id))
+                .forEach(frame -> text.append(frame.path("text").asText()));
+        return text.toString();
+    }
+
+    private static Jwt jwt(String subject, Instant expiresAt) {
+        return Jwt.withTokenValue(subject + "-token")
+                .header("alg", "none")
+                .subject(subject)
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
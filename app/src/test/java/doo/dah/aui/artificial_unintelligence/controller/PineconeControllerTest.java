@@ -0,0 +1,97 @@
+package doo.dah.aui.artificial_unintelligence.controller;
+
+import doo.dah.aui.artificial_unintelligence.service.ChunkIndexService;
+import doo.dah.aui.artificial_unintelligence.service.DocumentCatalogService;
+import doo.dah.aui.artificial_unintelligence.service.DocumentProcessingService;
+import doo.dah.aui.artificial_unintelligence.service.IngestionBulkhead;
+import doo.dah.aui.artificial_unintelligence.service.IngestionMetrics;
+import doo.dah.aui.artificial_unintelligence.service.PineconeService;
+import doo.dah.aui.artificial_unintelligence.service.WebCrawlerService;
+import doo.dah.aui.artificial_unintelligence.vectorstore.CachingVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PineconeControllerTest {
+
+    private final CachingVectorStore cachingVectorStore = mock(CachingVectorStore.class);
+    private final DocumentCatalogService catalog = mock(DocumentCatalogService.class);
+    private final PineconeService pineconeService = new PineconeService(mock(VectorStore.class), mock(RestTemplate.class),
+            mock(DocumentProcessingService.class), mock(ChunkIndexService.class), catalog,
+            mock(IngestionBulkhead.class), mock(IngestionMetrics.class), cachingVectorStore);
+    private final PineconeController controller = new PineconeController(mock(VectorStore.class),
+            mock(RestTemplate.class), mock(DocumentProcessingService.class), mock(WebCrawlerService.class),
+            cachingVectorStore, pineconeService);
+
+    @BeforeEach
+    void twentyFiveHits() {
+        when(catalog.hydrate(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cachingVectorStore.similaritySearchUncached(any(SearchRequest.class))).thenAnswer(invocation -> {
+            int topK = invocation.<SearchRequest>getArgument(0).getTopK();
+            return IntStream.range(0, Math.min(topK, 25))
+                    .mapToObj(i -> Document.builder().id("doc-" + i).text("chunk " + i).build())
+                    .toList();
+        });
+    }
+
+    @Test
+    void cursorsWalkThroughEveryResultOnce() {
+        List<Object> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ResponseEntity<Flux<Map<String, Object>>> response = search(10, cursor);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getFirst("Server-Timing")).startsWith("search;dur=");
+            response.getBody().map(result -> result.get("id")).toIterable().forEach(ids::add);
+            cursor = response.getHeaders().getFirst("X-Next-Cursor");
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(ids).hasSize(25).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void contentIsLeftOutOnRequest() {
+        ResponseEntity<Flux<Map<String, Object>>> response = controller.searchDocuments("parade", 1, null, 0.0, null, false);
+
+        assertThat(response.getBody().blockFirst()).containsKeys("id", "metadata").doesNotContainKey("content");
+    }
+
+    @Test
+    void nonPositiveTopKIsABadRequest() {
+        assertThat(search(0, null).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(search(-1, null).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void malformedCursorsAreABadRequest() {
+        assertThat(search(10, "not a cursor").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        // A valid encoding of a negative offset
+        assertThat(search(10, "LTE").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(cachingVectorStore);
+    }
+
+    private ResponseEntity<Flux<Map<String, Object>>> search(int topK, String cursor) {
+        return controller.searchDocuments("parade", topK, null, 0.0, cursor, true);
+    }
+}
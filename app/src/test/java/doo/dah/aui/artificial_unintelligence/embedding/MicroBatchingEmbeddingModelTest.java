@@ -0,0 +1,89 @@
+package doo.dah.aui.artificial_unintelligence.embedding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroBatchingEmbeddingModelTest {
+
+    // Embeds a text as its length and records every call it receives
+    private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+    private final EmbeddingModel delegate = new EmbeddingModel() {
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            calls.add(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(new float[]{request.getInstructions().get(i).length()}, i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    };
+
+    @Test
+    void concurrentEmbeddingsShareOneCall() throws Exception {
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, Duration.ofSeconds(10), 3,
+                new SimpleMeterRegistry());
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<float[]> a = callers.submit(() -> model.embed("a"));
+            Future<float[]> bb = callers.submit(() -> model.embed("bb"));
+            Future<float[]> ccc = callers.submit(() -> model.embed("ccc"));
+
+            // The third text fills the batch, nobody waits for the window
+            assertThat(a.get()).containsExactly(1f);
+            assertThat(bb.get()).containsExactly(2f);
+            assertThat(ccc.get()).containsExactly(3f);
+        }
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0)).containsExactlyInAnyOrder("a", "bb", "ccc");
+        model.close();
+    }
+
+    @Test
+    void lonelyEmbeddingIsSentWhenTheWindowCloses() {
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, Duration.ofMillis(5), 32,
+                new SimpleMeterRegistry());
+
+        assertThat(model.embed("four")).containsExactly(4f);
+        assertThat(model.embed(List.of("x", "yy"))).hasSize(2);
+        assertThat(calls).containsExactly(List.of("four"), List.of("x", "yy"));
+        model.close();
+    }
+
+    @Test
+    void embeddingTimeIsReportedToTheCallersStopwatch() {
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, Duration.ofMillis(20), 32,
+                new SimpleMeterRegistry());
+        EmbeddingStopwatch stopwatch = new EmbeddingStopwatch();
+        EmbeddingStopwatch outer = new EmbeddingStopwatch();
+
+        // A single text waits for the batch window
+        outer.run(() -> stopwatch.run(() -> model.embed("four")));
+        assertThat(stopwatch.nanos()).isGreaterThanOrEqualTo(Duration.ofMillis(20).toNanos());
+        assertThat(outer.nanos()).isEqualTo(stopwatch.nanos());
+
+        long measured = stopwatch.nanos();
+        model.embed(List.of("x", "yy"));
+        assertThat(stopwatch.nanos()).as("nothing is recorded outside run").isEqualTo(measured);
+        model.close();
+    }
+}
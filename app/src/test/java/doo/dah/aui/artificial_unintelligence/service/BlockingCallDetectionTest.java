@@ -0,0 +1,82 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the non-blocking parts of the chat path on Reactor's parallel threads with
+ * BlockHound installed (through blockhound-junit-platform), so a blocking call sneaking
+ * onto an event loop fails the build.
+ */
+class BlockingCallDetectionTest {
+
+    @Test
+    void blockingOnParallelThreadIsDetected() {
+        Mono<Long> blocking = Mono.delay(Duration.ofMillis(1))
+                .doOnNext(tick -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        StepVerifier.create(blocking)
+                .expectErrorMatches(BlockingOperationError.class::isInstance)
+                .verify();
+    }
+
+    @Test
+    void admissionAndCoalescingDoNotBlock() {
+        GenerationAdmissionController admission = new GenerationAdmissionController(new SimpleMeterRegistry(),
+                1, 10, Duration.ofSeconds(1));
+        ChatRequestCoalescer coalescer = new ChatRequestCoalescer(new SimpleMeterRegistry());
+        Flux<String> generation = Flux.just("a", "b").delayElements(Duration.ofMillis(5));
+
+        // The second generation is queued and granted from the parallel thread finishing the first
+        Flux<String> streams = Flux.merge(
+                        coalescer.join("key", "c1", () -> admission.admit("u1", () -> generation)).tokens(),
+                        admission.admit("u2", () -> generation))
+                .subscribeOn(Schedulers.parallel());
+
+        StepVerifier.create(streams)
+                .expectNextCount(4)
+                .verifyComplete();
+    }
+
+    @Test
+    void questionLogEnqueueDoesNotBlock() {
+        QuestionLogWriter writer = new QuestionLogWriter(mock(UserQuestionRepository.class),
+                mock(SqliteWriteExecutor.class), mock(QuestionAnalyticsService.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 1, Duration.ofSeconds(1), 10,
+                "drop-oldest");
+        UserQuestion question = UserQuestion.builder()
+                .username("u1")
+                .question("when is the parade?")
+                .timestamp(Instant.now())
+                .build();
+
+        Mono<Void> enqueue = Mono.fromRunnable(() -> {
+                    writer.enqueue(question);
+                    // Queue is full now, the overflow policy kicks in
+                    writer.enqueue(question);
+                })
+                .subscribeOn(Schedulers.parallel())
+                .then();
+
+        StepVerifier.create(enqueue).verifyComplete();
+    }
+}
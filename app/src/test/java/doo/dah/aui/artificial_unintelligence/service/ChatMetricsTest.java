@@ -0,0 +1,65 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMetrics chatMetrics = new ChatMetrics(meterRegistry, "llama3");
+
+    @Test
+    void completedStreamsRecordLatencyAndThroughput() {
+        Flux<ChatResponse> responses = Flux.just(response(""), response("Hello"), response(" world"))
+                .delayElements(Duration.ofMillis(10));
+
+        StepVerifier.create(chatMetrics.instrument("chat", responses)).expectNextCount(3).verifyComplete();
+
+        // The empty first chunk is not a token
+        Timer firstToken = meterRegistry.get(ChatMetrics.FIRST_TOKEN_TIMER)
+                .tags("model", "llama3", "endpoint", "chat").timer();
+        assertThat(firstToken.count()).isEqualTo(1);
+        assertThat(firstToken.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        assertThat(meterRegistry.get("chat.stream.duration").tag("outcome", "completed").timer().count()).isEqualTo(1);
+        // Without reported usage every chunk with text counts as one token
+        assertThat(meterRegistry.get("chat.completion.tokens").summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("chat.tokens.per.second").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledStreamsOnlyRecordTheirDuration() {
+        Flux<ChatResponse> responses = Flux.just(response("Hello")).concatWith(Flux.never());
+
+        StepVerifier.create(chatMetrics.instrument("chat", responses)).expectNextCount(1).thenCancel().verify();
+
+        assertThat(meterRegistry.get("chat.stream.duration").tag("outcome", "cancelled").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("chat.completion.tokens").summary()).isNull();
+    }
+
+    @Test
+    void failedStreamsAreTaggedAsErrors() {
+        Flux<ChatResponse> responses = Flux.error(new IllegalStateException("model unavailable"));
+
+        StepVerifier.create(chatMetrics.instrument("ollama", responses)).verifyError(IllegalStateException.class);
+
+        assertThat(meterRegistry.get("chat.stream.duration").tags("endpoint", "ollama", "outcome", "error").timer()
+                .count()).isEqualTo(1);
+        assertThat(meterRegistry.find(ChatMetrics.FIRST_TOKEN_TIMER).timer()).isNull();
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
@@ -0,0 +1,86 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatRequestCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatRequestCoalescer coalescer = new ChatRequestCoalescer(meterRegistry);
+
+    @Test
+    void onlyTheFirstCallerLeads() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        ChatRequestCoalescer.Flight first = coalescer.join("key", "u1:default", upstream::asFlux);
+        ChatRequestCoalescer.Flight second = coalescer.join("key", "u2:default", upstream::asFlux);
+
+        assertThat(first.leader()).isTrue();
+        assertThat(second.leader()).isFalse();
+        assertThat(meterRegistry.counter("chat.coalesced.requests", "role", "leader").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("chat.coalesced.requests", "role", "follower").count()).isEqualTo(1);
+    }
+
+    @Test
+    void aDuplicateFromTheSameConversationIsAFollower() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        ChatRequestCoalescer.Flight first = coalescer.join("key", "u1:default", upstream::asFlux);
+        ChatRequestCoalescer.Flight duplicate = coalescer.join("key", "u1:default", upstream::asFlux);
+
+        assertThat(first.leader()).isTrue();
+        assertThat(duplicate.leader()).isFalse();
+        assertThat(duplicate.ownerId()).isEqualTo("u1:default");
+    }
+
+    @Test
+    void lateJoinersReceiveTheTokensAlreadyEmitted() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger starts = new AtomicInteger();
+        ChatRequestCoalescer.Flight leader = coalescer.join("key", "u1:default", () -> {
+            starts.incrementAndGet();
+            return upstream.asFlux();
+        });
+        StringBuilder leaderTokens = new StringBuilder();
+        leader.tokens().subscribe(leaderTokens::append);
+        upstream.tryEmitNext("Hello");
+
+        ChatRequestCoalescer.Flight follower = coalescer.join("key", "u2:default", () -> {
+            starts.incrementAndGet();
+            return Flux.just("never");
+        });
+        StringBuilder followerTokens = new StringBuilder();
+        follower.tokens().subscribe(followerTokens::append);
+        upstream.tryEmitNext(" world");
+        upstream.tryEmitComplete();
+
+        assertThat(starts).hasValue(1);
+        assertThat(leaderTokens).hasToString("Hello world");
+        assertThat(followerTokens).hasToString("Hello world");
+    }
+
+    @Test
+    void aCompletedFlightIsNotJoined() {
+        coalescer.join("key", "u1:default", () -> Flux.just("first")).tokens().blockLast();
+
+        ChatRequestCoalescer.Flight next = coalescer.join("key", "u2:default", () -> Flux.just("second"));
+
+        assertThat(next.leader()).isTrue();
+        assertThat(next.tokens().collectList().block()).containsExactly("second");
+    }
+
+    @Test
+    void differentKeysDoNotShareAGeneration() {
+        ChatRequestCoalescer.Flight first = coalescer.join("a", "u1:default", () -> Flux.just("a"));
+        ChatRequestCoalescer.Flight second = coalescer.join("b", "u1:default", () -> Flux.just("b"));
+
+        assertThat(first.leader()).isTrue();
+        assertThat(second.leader()).isTrue();
+    }
+}
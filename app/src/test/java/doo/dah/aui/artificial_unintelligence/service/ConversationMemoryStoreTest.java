@@ -0,0 +1,192 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.ChatMessageRecord;
+import doo.dah.aui.artificial_unintelligence.repos.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationMemoryStoreTest {
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ChatMessageRecord> saved = new ArrayList<>();
+
+    {
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            invocation.<Iterable<ChatMessageRecord>>getArgument(0).forEach(saved::add);
+            return List.of();
+        });
+    }
+
+    @Test
+    void keepsABoundedWindowPerConversation() {
+        ConversationMemoryStore store = store(3, Duration.ofMinutes(5), Duration.ZERO);
+
+        store.add("c1", List.of(new UserMessage("1"), new AssistantMessage("2")));
+        store.add("c1", List.of(new UserMessage("3"), new AssistantMessage("4")));
+
+        assertThat(texts(store.get("c1", 10))).containsExactly("2", "3", "4");
+        assertThat(texts(store.get("c1", 1))).containsExactly("4");
+        assertThat(store.get("c2", 10)).isEmpty();
+    }
+
+    @Test
+    void flushWritesQueuedMessagesInOrder() {
+        ConversationMemoryStore store = store(20, Duration.ofMinutes(5), Duration.ZERO);
+        store.add("c1", List.of(new UserMessage("question"), new AssistantMessage("answer")));
+
+        store.flush();
+
+        assertThat(saved).extracting(ChatMessageRecord::getContent).containsExactly("question", "answer");
+    }
+
+    @Test
+    void aFailedWriteIsRetried() {
+        ConversationMemoryStore store = store(20, Duration.ofMinutes(5), Duration.ZERO);
+        failNextSave();
+        store.add("c1", List.of(new UserMessage("question")));
+
+        store.flush();
+        store.add("c1", List.of(new AssistantMessage("answer")));
+        store.flush();
+
+        assertThat(saved).extracting(ChatMessageRecord::getContent).containsExactly("question", "answer");
+        assertThat(saved).extracting(ChatMessageRecord::getId).containsOnlyNulls();
+    }
+
+    @Test
+    void retriesWaitForTheBackoff() {
+        ConversationMemoryStore store = store(20, Duration.ofMinutes(5), Duration.ofHours(1));
+        failNextSave();
+        store.add("c1", List.of(new UserMessage("question")));
+
+        store.flush();
+        store.flush();
+        assertThat(saved).isEmpty();
+        verify(repository, times(1)).saveAll(anyIterable());
+
+        store.flushOnShutdown();
+        assertThat(saved).extracting(ChatMessageRecord::getContent).containsExactly("question");
+    }
+
+    @Test
+    void reloadingAConversationReadsUnwrittenMessagesWithoutWriting() {
+        // Every entry expires straight away, so each get reloads the conversation
+        ConversationMemoryStore store = store(20, Duration.ofNanos(1), Duration.ZERO);
+        when(repository.findByConversationIdOrderByIdDesc(eq("c1"), any()))
+                .thenReturn(List.of(record("c1", "ASSISTANT", "stored answer"), record("c1", "USER", "stored question")));
+
+        store.add("c1", List.of(new UserMessage("question"), new AssistantMessage("answer")));
+        store.add("c2", List.of(new UserMessage("elsewhere")));
+
+        assertThat(texts(store.get("c1", 10)))
+                .containsExactly("stored question", "stored answer", "question", "answer");
+        verify(repository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    void aFailedBatchIsRetriedBeforeMessagesQueuedDuringTheWrite() {
+        ConversationMemoryStore store = store(20, Duration.ofMinutes(5), Duration.ZERO);
+        doAnswer(invocation -> {
+            store.add("c1", List.of(new AssistantMessage("newer")));
+            throw new DataAccessResourceFailureException("database is locked");
+        }).doAnswer(invocation -> {
+            invocation.<Iterable<ChatMessageRecord>>getArgument(0).forEach(saved::add);
+            return List.of();
+        }).when(repository).saveAll(anyIterable());
+        store.add("c1", List.of(new UserMessage("older")));
+
+        store.flush();
+        store.flush();
+
+        assertThat(saved).extracting(ChatMessageRecord::getContent).containsExactly("older", "newer");
+    }
+
+    @Test
+    void loadsDuringAWriteSeeTheBatchBeingWrittenOnce() {
+        // Every entry expires straight away, so the get inside the write reloads the conversation
+        ConversationMemoryStore store = store(20, Duration.ofNanos(1), Duration.ZERO);
+        List<ChatMessageRecord> committed = new ArrayList<>();
+        List<String> seenDuringWrite = new ArrayList<>();
+        when(repository.findByConversationIdOrderByIdDesc(eq("c1"), any())).thenAnswer(invocation -> committed.reversed());
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            long id = 1;
+            for (ChatMessageRecord record : invocation.<Iterable<ChatMessageRecord>>getArgument(0)) {
+                record.setId(id++);
+                committed.add(record);
+            }
+            // Runs on the writer thread, a flush holding the store's lock over the write would deadlock here
+            seenDuringWrite.addAll(texts(store.get("c1", 10)));
+            return List.of();
+        });
+        store.add("c1", List.of(new UserMessage("question"), new AssistantMessage("answer")));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), store::flush);
+
+        assertThat(seenDuringWrite).containsExactly("question", "answer");
+    }
+
+    @Test
+    void clearingDropsUnwrittenMessages() {
+        ConversationMemoryStore store = store(20, Duration.ofMinutes(5), Duration.ZERO);
+        store.add("c1", List.of(new UserMessage("forget me")));
+        store.add("c2", List.of(new UserMessage("keep me")));
+
+        store.clear("c1");
+        store.flush();
+
+        verify(repository).deleteByConversationId("c1");
+        assertThat(saved).extracting(ChatMessageRecord::getContent).containsExactly("keep me");
+        assertThat(store.get("c1", 10)).isEmpty();
+    }
+
+    private ConversationMemoryStore store(int windowSize, Duration idleTimeout, Duration retryBackoff) {
+        return new ConversationMemoryStore(repository, new SqliteWriteExecutor(meterRegistry), meterRegistry,
+                windowSize, 100, idleTimeout, 100, retryBackoff, Duration.ofHours(1));
+    }
+
+    // Fails like a rolled back transaction, after the ids were assigned
+    private void failNextSave() {
+        doAnswer(invocation -> {
+            invocation.<Iterable<ChatMessageRecord>>getArgument(0).forEach(record -> record.setId(1L));
+            throw new DataAccessResourceFailureException("database is locked");
+        }).doAnswer(invocation -> {
+            invocation.<Iterable<ChatMessageRecord>>getArgument(0).forEach(saved::add);
+            return List.of();
+        }).when(repository).saveAll(anyIterable());
+    }
+
+    private static ChatMessageRecord record(String conversationId, String type, String content) {
+        return ChatMessageRecord.builder()
+                .conversationId(conversationId)
+                .messageType(type)
+                .content(content)
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,98 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import doo.dah.aui.artificial_unintelligence.models.DocumentCatalogEntry;
+import doo.dah.aui.artificial_unintelligence.repos.DocumentCatalogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentCatalogServiceTest {
+
+    private final DocumentCatalogRepository repository = mock(DocumentCatalogRepository.class);
+    private final DocumentCatalogService catalog = new DocumentCatalogService(repository,
+            new SqliteWriteExecutor(new SimpleMeterRegistry()), new ObjectMapper(), 100);
+
+    @Test
+    void chunksKeepOnlyTheFilterableMetadata() {
+        Map<String, Object> metadata = Map.of("source", "https://example.org", "title", "Parade",
+                "tags", List.of("parade"), "description", "A long description");
+
+        Map<String, Object> chunk = catalog.chunkMetadata("doc-1", metadata, 3);
+
+        assertThat(chunk).containsOnlyKeys(DocumentCatalogService.DOCUMENT_ID_KEY, DocumentCatalogService.CHUNK_KEY,
+                "source", "title", "tags");
+        assertThat(chunk).containsEntry(DocumentCatalogService.DOCUMENT_ID_KEY, "doc-1")
+                .containsEntry(DocumentCatalogService.CHUNK_KEY, 3)
+                .containsEntry("title", "Parade");
+    }
+
+    @Test
+    void registeredMetadataIsReattachedToChunks() {
+        String documentId = catalog.register(Map.of("source", "https://example.org", "description", "Long"));
+
+        Map<String, Object> full = catalog.fullMetadata(chunk(documentId));
+
+        assertThat(full).containsEntry("description", "Long")
+                .containsEntry(DocumentCatalogService.CHUNK_KEY, 1);
+        verify(repository).save(any(DocumentCatalogEntry.class));
+    }
+
+    @Test
+    void missesAreNotCached() {
+        when(repository.findById("doc-1")).thenReturn(Optional.empty());
+        Document chunk = chunk("doc-1");
+
+        assertThat(catalog.fullMetadata(chunk)).isEqualTo(chunk.getMetadata());
+
+        when(repository.findById("doc-1")).thenReturn(Optional.of(entry("doc-1", "{\"description\":\"Late\"}")));
+        assertThat(catalog.fullMetadata(chunk)).containsEntry("description", "Late");
+        verify(repository, times(2)).findById("doc-1");
+    }
+
+    @Test
+    void hydrateLeavesUnknownDocumentsAlone() {
+        when(repository.findAllById(any())).thenReturn(List.of(entry("doc-1", "{\"description\":\"Known\"}")));
+        Document known = chunk("doc-1");
+        Document unknown = chunk("doc-2");
+
+        List<Document> hydrated = catalog.hydrate(List.of(known, unknown));
+
+        assertThat(hydrated.get(0).getMetadata()).containsEntry("description", "Known");
+        assertThat(hydrated.get(1)).isSameAs(unknown);
+    }
+
+    @Test
+    void removedDocumentsAreDeletedAndEvicted() {
+        String documentId = catalog.register(Map.of("description", "Gone soon"));
+        when(repository.findById(documentId)).thenReturn(Optional.empty());
+
+        catalog.remove(List.of(documentId));
+
+        verify(repository).deleteAllByIdInBatch(List.of(documentId));
+        assertThat(catalog.fullMetadata(chunk(documentId))).doesNotContainKey("description");
+    }
+
+    private static Document chunk(String documentId) {
+        return Document.builder()
+                .text("chunk")
+                .metadata(Map.of(DocumentCatalogService.DOCUMENT_ID_KEY, documentId, DocumentCatalogService.CHUNK_KEY, 1))
+                .build();
+    }
+
+    private static DocumentCatalogEntry entry(String id, String metadata) {
+        return DocumentCatalogEntry.builder().id(id).metadata(metadata).createdAt(Instant.now()).build();
+    }
+}
@@ -0,0 +1,116 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenerationAdmissionControllerTest {
+
+    private final List<String> started = new ArrayList<>();
+
+    private GenerationAdmissionController controller(int maxConcurrent, int queueCapacity) {
+        return new GenerationAdmissionController(new SimpleMeterRegistry(), maxConcurrent, queueCapacity,
+                Duration.ofSeconds(3));
+    }
+
+    // A generation that runs until the returned sink completes
+    private Flux<String> held(GenerationAdmissionController controller, String user, String name,
+                              Sinks.Empty<Void> done) {
+        return controller.admit(user, () -> {
+            started.add(name);
+            return done.asMono().thenMany(Flux.just(name));
+        });
+    }
+
+    @Test
+    void queuesBeyondLimitAndRejectsWhenQueueIsFull() {
+        GenerationAdmissionController controller = controller(1, 1);
+        Sinks.Empty<Void> first = Sinks.empty();
+
+        held(controller, "alice", "a", first).subscribe();
+        held(controller, "bob", "b", Sinks.empty()).subscribe();
+
+        assertThat(started).containsExactly("a");
+        assertThat(controller.queued()).isEqualTo(1);
+        assertThatThrownBy(controller::rejectIfSaturated)
+                .isInstanceOfSatisfying(GenerationRejectedException.class,
+                        e -> assertThat(e.getHeaders().getFirst("Retry-After")).isEqualTo("3"));
+
+        first.tryEmitEmpty();
+
+        assertThat(started).containsExactly("a", "b");
+        assertThat(controller.active()).isEqualTo(1);
+        assertThat(controller.queued()).isZero();
+    }
+
+    @Test
+    void servesWaitingUsersRoundRobin() {
+        GenerationAdmissionController controller = controller(1, 10);
+        Sinks.Empty<Void> running = Sinks.empty();
+        held(controller, "alice", "a0", running).subscribe();
+
+        List<Sinks.Empty<Void>> waiting = List.of(Sinks.empty(), Sinks.empty(), Sinks.empty());
+        held(controller, "alice", "a1", waiting.get(0)).subscribe();
+        held(controller, "alice", "a2", waiting.get(1)).subscribe();
+        held(controller, "bob", "b1", waiting.get(2)).subscribe();
+
+        running.tryEmitEmpty();
+        waiting.get(0).tryEmitEmpty();
+        waiting.get(2).tryEmitEmpty();
+
+        assertThat(started).containsExactly("a0", "a1", "b1", "a2");
+    }
+
+    @Test
+    void cancellingWhileQueuedFreesTheQueueSlot() {
+        GenerationAdmissionController controller = controller(1, 1);
+        Sinks.Empty<Void> running = Sinks.empty();
+        held(controller, "alice", "a", running).subscribe();
+        Disposable waiting = held(controller, "bob", "b", Sinks.empty()).subscribe();
+
+        waiting.dispose();
+        running.tryEmitEmpty();
+
+        assertThat(started).containsExactly("a");
+        assertThat(controller.queued()).isZero();
+        assertThat(controller.active()).isZero();
+    }
+
+    @Test
+    void admitFailsTheStreamWhenTheQueueIsFull() {
+        GenerationAdmissionController controller = controller(1, 0);
+        held(controller, "alice", "a", Sinks.empty()).subscribe();
+        List<Throwable> errors = new ArrayList<>();
+
+        held(controller, "bob", "b", Sinks.empty()).subscribe(name -> {
+        }, errors::add);
+
+        assertThat(started).containsExactly("a");
+        assertThat(errors).singleElement().isInstanceOf(GenerationRejectedException.class);
+        assertThat(controller.active()).isEqualTo(1);
+    }
+
+    @Test
+    void aFailedGenerationReleasesItsSlot() {
+        GenerationAdmissionController controller = controller(1, 1);
+
+        controller.admit("alice", () -> Flux.<String>error(new IllegalStateException("model down")))
+                .subscribe(name -> {
+                }, error -> {
+                });
+        held(controller, "bob", "b", Sinks.empty()).subscribe();
+
+        assertThat(started).containsExactly("b");
+        assertThat(controller.active()).isEqualTo(1);
+        assertThat(controller.queued()).isZero();
+    }
+}
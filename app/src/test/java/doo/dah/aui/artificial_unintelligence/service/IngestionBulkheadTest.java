@@ -0,0 +1,196 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.embedding.MicroBatchingEmbeddingModel;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestionBulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GenerationAdmissionController admission = mock(GenerationAdmissionController.class);
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final IngestionBulkhead bulkhead = new IngestionBulkhead(meterRegistry, admission,
+            new IngestionMetrics(meterRegistry), 1, 1, 1, 8, 2, Duration.ofSeconds(2), Duration.ofSeconds(30));
+
+    @AfterEach
+    void shutdown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    void documentsAreStoredInBatches() {
+        bulkhead.store(vectorStore, documents("a", "b", "c"));
+
+        verify(vectorStore, times(2)).add(anyList());
+        verify(vectorStore, never()).delete(anyList());
+        assertThat(meterRegistry.counter("ingestion.chunks").count()).isEqualTo(3);
+    }
+
+    @Test
+    void aFailedBatchRollsBackTheBatchesStoredBeforeIt() {
+        List<Document> documents = documents("a", "b", "c", "d", "e");
+        doThrow(new IllegalStateException("upsert failed")).when(vectorStore).add(documents.subList(2, 4));
+
+        assertThatThrownBy(() -> bulkhead.store(vectorStore, documents))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("upsert failed");
+
+        verify(vectorStore).delete(List.of("a", "b", "c", "d"));
+        verify(vectorStore, times(2)).add(anyList());
+    }
+
+    @Test
+    void aFailedRollbackReportsHowManyChunksWereStored() {
+        List<Document> documents = documents("a", "b", "c");
+        doThrow(new IllegalStateException("upsert failed")).when(vectorStore).add(documents.subList(2, 3));
+        doThrow(new IllegalStateException("delete failed")).when(vectorStore).delete(anyList());
+
+        assertThatThrownBy(() -> bulkhead.store(vectorStore, documents))
+                .isInstanceOfSatisfying(PartialIngestionException.class,
+                        e -> assertThat(e.getStoredChunks()).isEqualTo(2))
+                .hasRootCauseMessage("upsert failed");
+    }
+
+    @Test
+    void embeddingIsTimedSeparatelyFromTheUpsert() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.call(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return new EmbeddingResponse(List.of());
+        });
+        MicroBatchingEmbeddingModel batching = new MicroBatchingEmbeddingModel(embeddingModel, Duration.ofMillis(5), 32,
+                meterRegistry);
+        // Embeds like a real vector store does before upserting
+        doAnswer(invocation -> batching.call(new EmbeddingRequest(List.of("a"), null)))
+                .when(vectorStore).add(anyList());
+
+        bulkhead.store(vectorStore, documents("a"));
+
+        Timer embed = meterRegistry.get("ingestion.stage.duration").tag("stage", "embed").timer();
+        Timer upsert = meterRegistry.get("ingestion.stage.duration").tag("stage", "upsert").timer();
+        Timer store = meterRegistry.get("ingestion.stage.duration").tag("stage", "store").timer();
+        assertThat(embed.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        assertThat(embed.totalTime(TimeUnit.NANOSECONDS) + upsert.totalTime(TimeUnit.NANOSECONDS))
+                .isLessThanOrEqualTo(store.totalTime(TimeUnit.NANOSECONDS) + TimeUnit.MILLISECONDS.toNanos(1));
+        batching.close();
+    }
+
+    @Test
+    void aSlowChatHalvesTheLimit() {
+        chatFirstTokenTook(Duration.ofSeconds(5));
+
+        bulkhead.adjust();
+        assertThat(bulkhead.limit()).isEqualTo(4);
+        bulkhead.adjust();
+        bulkhead.adjust();
+        bulkhead.adjust();
+        assertThat(bulkhead.limit()).as("never below the minimum").isEqualTo(1);
+    }
+
+    @Test
+    void queuedChatRequestsHalveTheLimit() {
+        when(admission.queued()).thenReturn(2);
+
+        bulkhead.adjust();
+
+        assertThat(bulkhead.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void theLimitGrowsBackOneAtATimeWhileIngestionIsSaturated() throws Exception {
+        when(admission.queued()).thenReturn(1, 1, 1, 0);
+        bulkhead.adjust();
+        bulkhead.adjust();
+        bulkhead.adjust();
+        assertThat(bulkhead.limit()).isEqualTo(1);
+
+        // A healthy chat alone does not grow the limit, ingestion has to be using all of it
+        bulkhead.adjust();
+        assertThat(bulkhead.limit()).isEqualTo(1);
+
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            storing.countDown();
+            release.await();
+            return null;
+        }).when(vectorStore).add(anyList());
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> store = callers.submit(() -> bulkhead.store(vectorStore, documents("a")));
+            assertThat(storing.await(5, TimeUnit.SECONDS)).isTrue();
+
+            bulkhead.adjust();
+            assertThat(bulkhead.limit()).isEqualTo(2);
+            release.countDown();
+            store.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(bulkhead.inUse()).isZero();
+    }
+
+    @Test
+    void crawlsBeyondTheQueueAreRejectedWithRetryAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = bulkhead.executor();
+        // One thread busy and one task queued fill the pool
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+        }))
+                .isInstanceOfSatisfying(IngestionRejectedException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("30");
+                });
+        assertThat(meterRegistry.counter("ingestion.executor.rejected").count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    private void chatFirstTokenTook(Duration latency) {
+        Timer.builder(ChatMetrics.FIRST_TOKEN_TIMER)
+                .publishPercentiles(0.95)
+                .register(meterRegistry)
+                .record(latency);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Document> documents(String... ids) {
+        return Arrays.stream(ids).map(id -> Document.builder().id(id).text(id).build()).toList();
+    }
+}
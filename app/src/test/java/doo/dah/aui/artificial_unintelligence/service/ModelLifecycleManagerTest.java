@@ -0,0 +1,131 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.config.ModelRoutingProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ModelLifecycleManagerTest {
+
+    private final OllamaChatModel chatModel = mock(OllamaChatModel.class);
+    private final OllamaEmbeddingModel embeddingModel = mock(OllamaEmbeddingModel.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRoutingProperties routing = new ModelRoutingProperties();
+    private ModelLifecycleManager manager;
+
+    @AfterEach
+    void stop() {
+        if (manager != null) manager.stop();
+    }
+
+    @Test
+    void disabledWarmUpIsReadyWithoutTouchingTheModels() {
+        manager = manager(false, Duration.ofMinutes(10));
+
+        manager.warmUp();
+        manager.keepAlive();
+
+        assertThat(manager.isWarmedUp()).isTrue();
+        verifyNoInteractions(chatModel, embeddingModel);
+    }
+
+    @Test
+    void warmUpLoadsEveryModelWithTheKeepAlive() {
+        routing.setSmallModel("llama3.2:1b");
+        manager = manager(true, Duration.ofMinutes(10));
+
+        manager.warmUp();
+
+        await().atMost(Duration.ofSeconds(5)).until(manager::isWarmedUp);
+        assertThat(manager.status()).containsOnlyKeys(ModelLifecycleManager.CHAT, ModelLifecycleManager.EMBEDDING,
+                ModelLifecycleManager.CHAT_SMALL);
+        assertThat(manager.status().values()).allMatch(ModelLifecycleManager.ModelStatus::loaded);
+
+        ArgumentCaptor<Prompt> prompts = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel, times(2)).call(prompts.capture());
+        assertThat(prompts.getAllValues())
+                .extracting(prompt -> ((OllamaOptions) prompt.getOptions()).getKeepAlive())
+                .containsOnly("30m");
+        assertThat(prompts.getAllValues())
+                .extracting(prompt -> ((OllamaOptions) prompt.getOptions()).getModel())
+                .containsExactlyInAnyOrder(null, "llama3.2:1b");
+        verify(embeddingModel).call(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void warmUpRetriesUntilTheModelAnswers() {
+        when(chatModel.call(any(Prompt.class)))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(null);
+        manager = manager(true, Duration.ofMinutes(10));
+
+        manager.warmUp();
+
+        await().atMost(Duration.ofSeconds(5)).until(manager::isWarmedUp);
+        assertThat(meterRegistry.counter("model.load.failures", "model", ModelLifecycleManager.CHAT).count())
+                .isEqualTo(1);
+        assertThat(manager.status().get(ModelLifecycleManager.CHAT).loaded()).isTrue();
+        // The embedding model answered the first time and is not pinged again
+        verify(embeddingModel, times(1)).call(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void idleModelsArePinged() {
+        manager = manager(true, Duration.ZERO);
+        manager.warmUp();
+        await().atMost(Duration.ofSeconds(5)).until(manager::isWarmedUp);
+
+        manager.keepAlive();
+
+        verify(chatModel, times(2)).call(any(Prompt.class));
+        verify(embeddingModel, times(2)).call(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void chatTrafficKeepsTheModelsWarmWithoutPings() {
+        manager = manager(true, Duration.ZERO);
+        manager.warmUp();
+        await().atMost(Duration.ofSeconds(5)).until(manager::isWarmedUp);
+
+        Timer.builder(ChatMetrics.FIRST_TOKEN_TIMER).register(meterRegistry).record(Duration.ofMillis(200));
+        manager.keepAlive();
+
+        verify(chatModel, times(1)).call(any(Prompt.class));
+        verify(embeddingModel, times(1)).call(any(EmbeddingRequest.class));
+    }
+
+    @Test
+    void pingsWaitForTheInterval() {
+        manager = manager(true, Duration.ofMinutes(10));
+        manager.warmUp();
+        await().atMost(Duration.ofSeconds(5)).until(manager::isWarmedUp);
+
+        manager.keepAlive();
+
+        verify(chatModel, times(1)).call(any(Prompt.class));
+        verify(embeddingModel, times(1)).call(any(EmbeddingRequest.class));
+    }
+
+    private ModelLifecycleManager manager(boolean warmUp, Duration pingInterval) {
+        return new ModelLifecycleManager(chatModel, embeddingModel, meterRegistry, routing,
+                warmUp, "30m", pingInterval, Duration.ZERO);
+    }
+}
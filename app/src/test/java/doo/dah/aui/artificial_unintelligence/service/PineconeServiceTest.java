@@ -0,0 +1,106 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.vectorstore.CachingVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PineconeServiceTest {
+
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final DocumentCatalogService catalog = mock(DocumentCatalogService.class);
+    private final CachingVectorStore cachingVectorStore = mock(CachingVectorStore.class);
+    private final PineconeService service = new PineconeService(vectorStore, mock(RestTemplate.class),
+            mock(DocumentProcessingService.class), mock(ChunkIndexService.class), catalog,
+            mock(IngestionBulkhead.class), mock(IngestionMetrics.class), cachingVectorStore);
+
+    @BeforeEach
+    void hydrateAsIs() {
+        when(catalog.hydrate(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void theFirstPageReportsTheNextOffset() {
+        hits(25);
+
+        PineconeService.SearchPage page = service.searchPage("parade", 10, null, 0.0, 0);
+
+        assertThat(page.documents()).extracting(Document::getId).containsExactlyElementsOf(ids(0, 10));
+        assertThat(page.nextOffset()).isEqualTo(10);
+    }
+
+    @Test
+    void laterPagesFetchTheWholeWindowAndSkipTheOffset() {
+        hits(25);
+
+        PineconeService.SearchPage page = service.searchPage("parade", 10, "source == 'faq'", 0.5, 10);
+
+        ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(cachingVectorStore).similaritySearchUncached(request.capture());
+        assertThat(request.getValue().getTopK()).isEqualTo(20);
+        assertThat(request.getValue().getSimilarityThreshold()).isEqualTo(0.5);
+        assertThat(request.getValue().hasFilterExpression()).isTrue();
+        assertThat(page.documents()).extracting(Document::getId).containsExactlyElementsOf(ids(10, 20));
+        assertThat(page.nextOffset()).isEqualTo(20);
+    }
+
+    @Test
+    void aShortPageIsTheLastOne() {
+        hits(25);
+
+        PineconeService.SearchPage page = service.searchPage("parade", 10, null, 0.0, 20);
+
+        assertThat(page.documents()).extracting(Document::getId).containsExactlyElementsOf(ids(20, 25));
+        assertThat(page.nextOffset()).isNull();
+    }
+
+    @Test
+    void searchesBypassTheCache() {
+        hits(3);
+
+        service.searchPage("parade", 10, null, 0.0, 0);
+
+        verifyNoInteractions(vectorStore);
+    }
+
+    @Test
+    void nonPositivePageSizesAndNegativeOffsetsAreRejected() {
+        assertThatThrownBy(() -> service.searchPage("parade", 0, null, 0.0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.searchPage("parade", -5, null, 0.0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.searchPage("parade", 10, null, 0.0, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(cachingVectorStore);
+    }
+
+    // The store returns at most topK of the given number of hits, best first
+    private void hits(int available) {
+        when(cachingVectorStore.similaritySearchUncached(any(SearchRequest.class))).thenAnswer(invocation -> {
+            int topK = invocation.<SearchRequest>getArgument(0).getTopK();
+            return ids(0, Math.min(topK, available)).stream()
+                    .map(id -> Document.builder().id(id).text(id).build())
+                    .toList();
+        });
+    }
+
+    private static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "doc-" + i).toList();
+    }
+}
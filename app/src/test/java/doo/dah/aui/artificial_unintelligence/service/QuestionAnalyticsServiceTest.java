@@ -0,0 +1,170 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.QuestionRollup;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.QuestionRollupRepository;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class QuestionAnalyticsServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final QuestionRollupRepository rollupRepository = mock(QuestionRollupRepository.class);
+    private final UserQuestionRepository questionRepository = mock(UserQuestionRepository.class);
+    private final QuestionAnalyticsService analytics = new QuestionAnalyticsService(rollupRepository, questionRepository);
+    // Stands in for the question_rollups table
+    private final Map<String, QuestionRollup> table = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() {
+        when(rollupRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<QuestionRollup> found = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(0).forEach(id -> {
+                QuestionRollup rollup = table.get(id);
+                if (rollup != null) found.add(copy(rollup));
+            });
+            return found;
+        });
+        when(rollupRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            invocation.<Iterable<QuestionRollup>>getArgument(0).forEach(rollup -> table.put(rollup.getId(), copy(rollup)));
+            return List.of();
+        });
+        when(rollupRepository.findByGranularityAndBucketStartBetweenOrderByBucketStart(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    String granularity = invocation.getArgument(0);
+                    Instant from = invocation.getArgument(1);
+                    Instant to = invocation.getArgument(2);
+                    return table.values().stream()
+                            .filter(rollup -> rollup.getGranularity().equals(granularity))
+                            .filter(rollup -> !rollup.getBucketStart().isBefore(from) && !rollup.getBucketStart().isAfter(to))
+                            .sorted(Comparator.comparing(QuestionRollup::getBucketStart))
+                            .toList();
+                });
+    }
+
+    @Test
+    void questionsAreSummedIntoTheirHourAndDayBuckets() {
+        analytics.applyRollups(List.of(
+                question(1, "2026-01-05T10:05:00Z", 100, 10L, 20L, 300L),
+                question(2, "2026-01-05T10:55:00Z", 50, 5L, 10L, 100L),
+                question(3, "2026-01-05T23:59:59Z", 10, 1L, 2L, 30L)));
+
+        assertThat(analytics.rollups("HOUR", Instant.EPOCH, Instant.parse("2027-01-01T00:00:00Z")))
+                .extracting(QuestionRollup::getBucketStart, QuestionRollup::getQuestions, QuestionRollup::getAnswerLength,
+                        QuestionRollup::getPromptTokens, QuestionRollup::getCompletionTokens, QuestionRollup::getLatencyMs)
+                .containsExactly(
+                        tuple(Instant.parse("2026-01-05T10:00:00Z"), 2L, 150L, 15L, 30L, 400L),
+                        tuple(Instant.parse("2026-01-05T23:00:00Z"), 1L, 10L, 1L, 2L, 30L));
+        assertThat(analytics.rollups("DAY", Instant.EPOCH, Instant.parse("2027-01-01T00:00:00Z")))
+                .singleElement()
+                .satisfies(day -> {
+                    assertThat(day.getId()).isEqualTo("DAY|2026-01-05T00:00:00Z");
+                    assertThat(day.getQuestions()).isEqualTo(3);
+                    assertThat(day.getLatencyMs()).isEqualTo(430);
+                });
+    }
+
+    @Test
+    void laterBatchesAddToExistingBuckets() {
+        analytics.applyRollups(List.of(question(1, "2026-01-05T10:05:00Z", 100, 10L, 20L, 300L)));
+        analytics.applyRollups(List.of(question(2, "2026-01-05T10:30:00Z", 50, 5L, 10L, 100L),
+                question(3, "2026-01-06T08:00:00Z", 10, 1L, 2L, 30L)));
+
+        assertThat(table.get("HOUR|2026-01-05T10:00:00Z").getQuestions()).isEqualTo(2);
+        assertThat(table.get("HOUR|2026-01-05T10:00:00Z").getAnswerLength()).isEqualTo(150);
+        assertThat(table.get("DAY|2026-01-05T00:00:00Z").getQuestions()).isEqualTo(2);
+        assertThat(table.get("DAY|2026-01-06T00:00:00Z").getQuestions()).isEqualTo(1);
+    }
+
+    @Test
+    void missingMeasurementsCountAsZero() {
+        analytics.applyRollups(List.of(question(1, "2026-01-05T10:05:00Z", null, null, null, null)));
+
+        QuestionRollup hour = table.get("HOUR|2026-01-05T10:00:00Z");
+        assertThat(hour.getQuestions()).isEqualTo(1);
+        assertThat(hour.getAnswerLength()).isZero();
+        assertThat(hour.getLatencyMs()).isZero();
+    }
+
+    @Test
+    void rollupsOutliveTheQuestionsRetentionArchives() {
+        List<UserQuestion> expired = List.of(question(1, "2026-01-05T10:05:00Z", 100, 10L, 20L, 300L),
+                question(2, "2026-01-05T11:05:00Z", 50, 5L, 10L, 100L));
+        analytics.applyRollups(expired);
+        clearInvocations(rollupRepository);
+        SqliteWriteExecutor writeExecutor = mock(SqliteWriteExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(writeExecutor).execute(any(Runnable.class));
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(eq("PRAGMA auto_vacuum"), eq(Integer.class))).thenReturn(2);
+        when(questionRepository.findByTimestampBeforeOrderByIdAsc(any(Instant.class), any(Pageable.class)))
+                .thenReturn(expired, List.of());
+        QuestionRetentionService retention = new QuestionRetentionService(questionRepository,
+                new QuestionArchive(QuestionArchiveTest.objectMapper(), directory), writeExecutor, jdbcTemplate,
+                new SimpleMeterRegistry(), Duration.ofDays(90), 100);
+
+        retention.archiveExpired();
+
+        verify(questionRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verifyNoInteractions(rollupRepository);
+        assertThat(analytics.rollups("DAY", Instant.EPOCH, Instant.parse("2027-01-01T00:00:00Z")))
+                .singleElement()
+                .satisfies(day -> {
+                    assertThat(day.getQuestions()).isEqualTo(2);
+                    assertThat(day.getAnswerLength()).isEqualTo(150);
+                });
+        assertThat(analytics.rollups("HOUR", Instant.EPOCH, Instant.parse("2027-01-01T00:00:00Z"))).hasSize(2);
+    }
+
+    private static UserQuestion question(long id, String timestamp, Integer answerLength, Long promptTokens,
+                                         Long completionTokens, Long latencyMs) {
+        return UserQuestion.builder()
+                .id(id)
+                .username("alice")
+                .question("q" + id)
+                .timestamp(Instant.parse(timestamp))
+                .answerLength(answerLength)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .latencyMs(latencyMs)
+                .build();
+    }
+
+    private static QuestionRollup copy(QuestionRollup rollup) {
+        return QuestionRollup.builder()
+                .id(rollup.getId())
+                .granularity(rollup.getGranularity())
+                .bucketStart(rollup.getBucketStart())
+                .questions(rollup.getQuestions())
+                .answerLength(rollup.getAnswerLength())
+                .promptTokens(rollup.getPromptTokens())
+                .completionTokens(rollup.getCompletionTokens())
+                .latencyMs(rollup.getLatencyMs())
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuestionArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    static UserQuestion question(long id, String username, String timestamp) {
+        return UserQuestion.builder().id(id).username(username).question("q" + id)
+                .timestamp(Instant.parse(timestamp)).build();
+    }
+
+    private QuestionArchive archive() {
+        return new QuestionArchive(objectMapper(), directory);
+    }
+
+    @Test
+    void appendsMonthlySegmentsAndReadsThemBackInRange() throws Exception {
+        QuestionArchive archive = archive();
+        archive.append(List.of(question(1, "alice", "2026-01-05T10:00:00Z"), question(2, "bob", "2026-02-01T09:00:00Z")));
+        archive.append(List.of(question(3, "alice", "2026-01-20T10:00:00Z")));
+
+        assertThat(archive.months()).containsExactly(YearMonth.of(2026, 1), YearMonth.of(2026, 2));
+        assertThat(archive.segments(YearMonth.of(2026, 1))).hasSize(2);
+
+        List<UserQuestion> january = archive.read(YearMonth.of(2026, 1), Instant.parse("2026-01-01T00:00:00Z"),
+                Instant.parse("2026-01-31T23:59:59Z"), question -> question.getUsername().equals("alice"))
+                .collectList().block();
+        assertThat(january).extracting(UserQuestion::getId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void archivedRowsAreRecognisedByIdAndTimestamp() throws Exception {
+        QuestionArchive archive = archive();
+        UserQuestion archived = question(1, "alice", "2026-01-05T10:00:00Z");
+        archive.append(List.of(archived));
+
+        // Same id handed out again after the table was emptied, with a later timestamp
+        UserQuestion reused = question(1, "bob", "2026-01-06T10:00:00Z");
+
+        assertThat(archive.alreadyArchived(List.of(question(1, "alice", "2026-01-05T10:00:00Z"), reused)))
+                .extracting(UserQuestion::getUsername)
+                .containsExactly("alice");
+    }
+}
@@ -0,0 +1,34 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class QuestionLogWriterTest {
+
+    @Test
+    void acceptsTheKnownOverflowPolicies() {
+        assertThatCode(() -> writer("drop-oldest")).doesNotThrowAnyException();
+        assertThatCode(() -> writer("DROP-NEWEST")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsAnUnknownOverflowPolicy() {
+        assertThatThrownBy(() -> writer("drop-latest"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("drop-latest");
+    }
+
+    private static QuestionLogWriter writer(String overflowPolicy) {
+        return new QuestionLogWriter(mock(UserQuestionRepository.class), mock(SqliteWriteExecutor.class),
+                mock(QuestionAnalyticsService.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 10, Duration.ofSeconds(1), 10, overflowPolicy);
+    }
+}
@@ -0,0 +1,78 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import doo.dah.aui.artificial_unintelligence.models.UserQuestion;
+import doo.dah.aui.artificial_unintelligence.repos.UserQuestionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+
+import static doo.dah.aui.artificial_unintelligence.service.QuestionArchiveTest.question;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class QuestionRetentionServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final UserQuestionRepository repository = mock(UserQuestionRepository.class);
+    private final SqliteWriteExecutor writeExecutor = mock(SqliteWriteExecutor.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private QuestionArchive archive;
+    private QuestionRetentionService retention;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(writeExecutor).execute(any(Runnable.class));
+        when(jdbcTemplate.queryForObject(eq("PRAGMA auto_vacuum"), eq(Integer.class))).thenReturn(2);
+
+        archive = new QuestionArchive(QuestionArchiveTest.objectMapper(), directory);
+        retention = new QuestionRetentionService(repository, archive, writeExecutor, jdbcTemplate,
+                new SimpleMeterRegistry(), Duration.ofDays(90), 100);
+    }
+
+    @Test
+    void expiredRowsAreArchivedThenDeleted() throws Exception {
+        List<UserQuestion> expired = List.of(question(1, "alice", "2026-01-05T10:00:00Z"));
+        when(repository.findByTimestampBeforeOrderByIdAsc(any(Instant.class), any(Pageable.class)))
+                .thenReturn(expired, List.of());
+
+        retention.archiveExpired();
+
+        assertThat(archive.segments(YearMonth.of(2026, 1))).singleElement()
+                .satisfies(segment -> assertThat(segment.count()).isEqualTo(1));
+        verify(repository).deleteAllByIdInBatch(List.of(1L));
+        verify(jdbcTemplate).execute("PRAGMA incremental_vacuum(2000)");
+    }
+
+    @Test
+    void rowsArchivedBeforeACrashAreDeletedWithoutArchivingThemTwice() throws Exception {
+        archive.append(List.of(question(1, "alice", "2026-01-05T10:00:00Z")));
+        // Row 1 survived the crash, row 2 reuses an id the archive has seen for another row
+        when(repository.findByTimestampBeforeOrderByIdAsc(any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(question(1, "alice", "2026-01-05T10:00:00Z"),
+                        question(2, "bob", "2026-01-07T10:00:00Z")), List.of());
+        archive.append(List.of(question(2, "carol", "2026-01-06T10:00:00Z")));
+
+        retention.archiveExpired();
+
+        List<UserQuestion> archived = archive.read(YearMonth.of(2026, 1), Instant.EPOCH, Instant.now(), question -> true)
+                .collectList().block();
+        assertThat(archived).extracting(UserQuestion::getUsername).containsExactly("alice", "carol", "bob");
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+}
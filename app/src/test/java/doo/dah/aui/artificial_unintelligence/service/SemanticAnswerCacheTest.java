@@ -0,0 +1,48 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SemanticAnswerCacheTest {
+
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(mock(EmbeddingModel.class),
+            new SimpleMeterRegistry(), Duration.ofMinutes(1), 10);
+
+    {
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.95);
+    }
+
+    @Test
+    void answersAreOnlyReplayedForTheSameRoute() {
+        float[] embedding = {1f, 0f};
+        cache.put("How do I donate?", "small", embedding, List.of("Online."), cache.generation());
+
+        assertThat(cache.lookup(embedding, "SMALL")).contains(List.of("Online."));
+        assertThat(cache.lookup(embedding, "large")).isEmpty();
+        assertThat(cache.lookup(embedding, null)).isEmpty();
+    }
+
+    @Test
+    void dissimilarQuestionsMiss() {
+        cache.put("How do I donate?", null, new float[]{1f, 0f}, List.of("Online."), cache.generation());
+
+        assertThat(cache.lookup(new float[]{0f, 1f}, null)).isEmpty();
+    }
+
+    @Test
+    void answersFromAnOutdatedKnowledgeBaseAreNotCached() {
+        long generation = cache.generation();
+        cache.onKnowledgeBaseChanged(null);
+        cache.put("How do I donate?", null, new float[]{1f, 0f}, List.of("Online."), generation);
+
+        assertThat(cache.lookup(new float[]{1f, 0f}, null)).isEmpty();
+    }
+}
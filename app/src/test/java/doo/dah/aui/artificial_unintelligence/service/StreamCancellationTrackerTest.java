@@ -0,0 +1,78 @@
+package doo.dah.aui.artificial_unintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamCancellationTrackerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StreamCancellationTracker tracker = new StreamCancellationTracker(meterRegistry);
+
+    @Test
+    void completedStreamsAreNotCountedAsCancelled() {
+        StepVerifier.create(tracker.track("chat", tokens(10))).expectNextCount(10).verifyComplete();
+
+        assertThat(meterRegistry.find("chat.stream.cancelled").counter()).isNull();
+    }
+
+    @Test
+    void cancelledStreamsSaveTheRestOfAnAverageAnswer() {
+        StepVerifier.create(tracker.track("chat", tokens(100))).expectNextCount(100).verifyComplete();
+
+        StepVerifier.create(tracker.track("chat", tokens(100).concatWith(Flux.never())).take(30))
+                .expectNextCount(30)
+                .verifyComplete();
+
+        assertThat(counter("chat.stream.cancelled")).isEqualTo(1);
+        assertThat(counter("chat.stream.tokens.before.cancel")).isEqualTo(30);
+        assertThat(counter("chat.stream.tokens.saved")).isEqualTo(70);
+    }
+
+    @Test
+    void theAverageFavoursOlderStreamsOverTheNewestOne() {
+        // 100, then 10% of the way to 200
+        StepVerifier.create(tracker.track("chat", tokens(100))).expectNextCount(100).verifyComplete();
+        StepVerifier.create(tracker.track("chat", tokens(200))).expectNextCount(200).verifyComplete();
+
+        StepVerifier.create(tracker.track("chat", Flux.<String>never())).thenCancel().verify();
+
+        assertThat(counter("chat.stream.tokens.saved")).isEqualTo(110);
+    }
+
+    @Test
+    void streamsLongerThanAverageSaveNothing() {
+        StepVerifier.create(tracker.track("chat", tokens(10))).expectNextCount(10).verifyComplete();
+
+        StepVerifier.create(tracker.track("chat", tokens(50)).take(20)).expectNextCount(20).verifyComplete();
+
+        assertThat(counter("chat.stream.tokens.saved")).isZero();
+        assertThat(counter("chat.stream.tokens.before.cancel")).isEqualTo(20);
+    }
+
+    @Test
+    void averagesAreKeptPerEndpoint() {
+        StepVerifier.create(tracker.track("chat", tokens(100))).expectNextCount(100).verifyComplete();
+
+        StepVerifier.create(tracker.track("ollama", Flux.<String>never())).thenCancel().verify();
+
+        // Nothing has completed on this endpoint yet, so there is no estimate
+        assertThat(meterRegistry.get("chat.stream.cancelled").tag("endpoint", "ollama").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("chat.stream.tokens.saved").tag("endpoint", "ollama").counter().count())
+                .isZero();
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("endpoint", "chat").counter().count();
+    }
+
+    private static Flux<String> tokens(int count) {
+        return Flux.fromStream(IntStream.range(0, count).mapToObj(i -> "t" + i));
+    }
+}
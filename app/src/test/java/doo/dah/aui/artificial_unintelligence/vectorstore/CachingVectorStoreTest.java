@@ -0,0 +1,108 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class CachingVectorStoreTest {
+
+    private final VectorStore delegate = mock(VectorStore.class);
+    private final CachingVectorStore store = new CachingVectorStore(delegate, Duration.ofMinutes(1), 100);
+
+    @Test
+    void repeatedNormalizedQueryIsServedFromCache() {
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(new Document("parade")));
+
+        store.similaritySearch(SearchRequest.builder().query("When is the parade?").topK(4).build());
+        List<Document> second = store.similaritySearch(SearchRequest.builder().query("  when is   the PARADE? ").topK(4).build());
+
+        assertThat(second).hasSize(1);
+        verify(delegate, times(1)).similaritySearch(any(SearchRequest.class));
+        assertThat(store.stats()).containsEntry("hits", 1L);
+    }
+
+    @Test
+    void differentTopKIsCachedSeparately() {
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+
+        store.similaritySearch(SearchRequest.builder().query("donate").topK(4).build());
+        store.similaritySearch(SearchRequest.builder().query("donate").topK(8).build());
+
+        verify(delegate, times(2)).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void writesInvalidateCachedResults() {
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+        SearchRequest request = SearchRequest.builder().query("merch").topK(4).build();
+
+        store.similaritySearch(request);
+        store.add(List.of(new Document("new merch")));
+        store.similaritySearch(request);
+        store.delete(List.of("some-id"));
+        store.similaritySearch(request);
+
+        verify(delegate, times(3)).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void largeDeletesAreBatchedButPublishedOnce() {
+        List<KnowledgeBaseChangedEvent> events = new ArrayList<>();
+        CachingVectorStore batching = new CachingVectorStore(delegate, Duration.ofMinutes(1), 100,
+                event -> events.add((KnowledgeBaseChangedEvent) event), 2);
+
+        batching.delete(List.of("a", "b", "c", "d", "e"));
+
+        verify(delegate).delete(List.of("a", "b"));
+        verify(delegate).delete(List.of("c", "d"));
+        verify(delegate).delete(List.of("e"));
+        assertThat(events).singleElement()
+                .extracting(KnowledgeBaseChangedEvent::deletedIds)
+                .isEqualTo(List.of("a", "b", "c", "d", "e"));
+    }
+
+    @Test
+    void deleteBatchSizeMustBePositive() {
+        assertThatThrownBy(() -> new CachingVectorStore(delegate, Duration.ofMinutes(1), 100, event -> {
+        }, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void failedAddsAreNotPublished() {
+        List<Object> events = new ArrayList<>();
+        CachingVectorStore publishing = new CachingVectorStore(delegate, Duration.ofMinutes(1), 100, events::add);
+        doThrow(new IllegalStateException("upsert failed")).when(delegate).add(anyList());
+
+        assertThatThrownBy(() -> publishing.add(List.of(new Document("lost"))))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(events).isEmpty();
+        assertThat(publishing.stats()).containsEntry("generation", 1L);
+    }
+
+    @Test
+    void aFailedDeleteBatchOnlyPublishesTheBatchesBeforeIt() {
+        List<KnowledgeBaseChangedEvent> events = new ArrayList<>();
+        CachingVectorStore batching = new CachingVectorStore(delegate, Duration.ofMinutes(1), 100,
+                event -> events.add((KnowledgeBaseChangedEvent) event), 2);
+        doThrow(new IllegalStateException("delete failed")).when(delegate).delete(List.of("c", "d"));
+
+        assertThatThrownBy(() -> batching.delete(List.of("a", "b", "c", "d", "e")))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(events).singleElement()
+                .extracting(KnowledgeBaseChangedEvent::deletedIds)
+                .isEqualTo(List.of("a", "b"));
+    }
+}
@@ -0,0 +1,185 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import doo.dah.aui.artificial_unintelligence.advisors.StageTimingAdvisor;
+import doo.dah.aui.artificial_unintelligence.embedding.MicroBatchingEmbeddingModel;
+import doo.dah.aui.artificial_unintelligence.service.DocumentCatalogService;
+import doo.dah.aui.artificial_unintelligence.service.LexicalIndexService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class HybridSearchVectorStoreTest {
+
+    private final VectorStore delegate = mock(VectorStore.class);
+    private final LexicalIndexService lexicalIndex = mock(LexicalIndexService.class);
+    private final DocumentCatalogService catalog = mock(DocumentCatalogService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HybridSearchVectorStore store = new HybridSearchVectorStore(delegate, lexicalIndex, catalog, 10, 2,
+            meterRegistry);
+
+    @BeforeEach
+    void hydrateAsIs() {
+        when(catalog.hydrate(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private static Document doc(String id, double score) {
+        return Document.builder().id(id).text(id).metadata(Map.of()).score(score).build();
+    }
+
+    private static SearchRequest query(String query) {
+        return SearchRequest.builder().query(query).topK(4).build();
+    }
+
+    @Test
+    void fusedDocumentsCarryNormalizedFusionScores() {
+        List<Document> fused = HybridSearchVectorStore.reciprocalRankFusion(List.of(
+                List.of(doc("a", 0.9), doc("b", 0.8)),
+                List.of(doc("a", 15.0), doc("c", 14.0))), 10);
+
+        assertThat(fused).extracting(Document::getId).containsExactly("a", "b", "c");
+        assertThat(fused.get(0).getScore()).isEqualTo(1.0);
+        assertThat(fused).allSatisfy(doc -> assertThat(doc.getScore()).isBetween(0.0, 1.0));
+    }
+
+    @Test
+    void lexicalOnlyHitsDoNotOutrankVectorHitsOnRawBm25() {
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of(doc("lexical", 9.0), doc("other", 8.0)));
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(doc("vector", 0.7)));
+
+        List<Document> results = store.similaritySearch(query("how do I donate"));
+
+        // Both ranked first in their own search, so they tie instead of BM25 winning
+        assertThat(results.get(0).getScore()).isEqualTo(results.get(1).getScore());
+        assertThat(results).allSatisfy(doc -> assertThat(doc.getScore()).isLessThanOrEqualTo(1.0));
+        assertThat(results).filteredOn(doc -> doc.getId().equals("vector"))
+                .singleElement()
+                .satisfies(doc -> assertThat(doc.getMetadata()).containsEntry(HybridSearchVectorStore.VECTOR_SCORE, 0.7));
+    }
+
+    @Test
+    void shortQuestionsStillRunTheVectorSearch() {
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of(doc("weak", 3.0)));
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(doc("vector", 0.8)));
+
+        store.similaritySearch(query("when is the parade"));
+
+        verify(delegate).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void strongKeywordMatchIgnoresTheVectorResults() {
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of(doc("sku", 20.0), doc("near", 6.0)));
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(doc("vector", 0.9)));
+
+        List<Document> results = store.similaritySearch(query("SKU 4411"));
+
+        assertThat(results).extracting(Document::getId).containsExactly("sku", "near");
+    }
+
+    @Test
+    void theVectorSearchRunsWhileTheLexicalSearchDoes() throws InterruptedException {
+        CountDownLatch vectorStarted = new CountDownLatch(1);
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            vectorStarted.countDown();
+            return List.of(doc("vector", 0.8));
+        });
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenAnswer(invocation -> {
+            // Only returns once the vector search is already under way
+            assertThat(vectorStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            return List.of(doc("weak", 3.0));
+        });
+
+        List<Document> results = store.similaritySearch(query("when is the parade"));
+
+        assertThat(results).extracting(Document::getId).containsExactlyInAnyOrder("vector", "weak");
+    }
+
+    @Test
+    void theFastPathDoesNotWaitForTheVectorSearch() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            release.await();
+            return List.of(doc("vector", 0.8));
+        });
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of(doc("sku", 20.0), doc("near", 6.0)));
+
+        List<Document> results = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> store.similaritySearch(query("SKU 4411")));
+
+        assertThat(results).extracting(Document::getId).containsExactly("sku", "near");
+        release.countDown();
+    }
+
+    @Test
+    void vectorSearchFailuresReachTheCaller() {
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of());
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenThrow(new IllegalStateException("pinecone down"));
+
+        assertThatThrownBy(() -> store.similaritySearch(query("when is the parade")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("pinecone down");
+    }
+
+    @Test
+    void embeddingIsTimedApartFromTheRestOfTheVectorSearch() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.call(any(EmbeddingRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(30);
+            return new EmbeddingResponse(List.of());
+        });
+        MicroBatchingEmbeddingModel batching = new MicroBatchingEmbeddingModel(embeddingModel, Duration.ofMillis(5), 32,
+                meterRegistry);
+        // Embeds the query like a real vector store, then spends a little longer searching
+        when(delegate.similaritySearch(any(SearchRequest.class))).thenAnswer(invocation -> {
+            batching.call(new EmbeddingRequest(List.of("when is the parade"), null));
+            Thread.sleep(10);
+            return List.of(doc("vector", 0.8));
+        });
+        when(lexicalIndex.search(anyString(), anyInt(), eq(false))).thenReturn(List.of());
+
+        store.similaritySearch(query("when is the parade"));
+
+        Timer embedding = meterRegistry.get(StageTimingAdvisor.TIMER).tag("advisor", "embedding").timer();
+        Timer vectorSearch = meterRegistry.get(StageTimingAdvisor.TIMER).tag("advisor", "vector-search").timer();
+        assertThat(embedding.count()).isEqualTo(1);
+        assertThat(embedding.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(30);
+        assertThat(vectorSearch.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(10);
+        batching.close();
+    }
+
+    @Test
+    void strongScoreWithoutMarginIsNotAFastPath() {
+        assertThat(store.isStrongKeywordMatch(List.of(doc("a", 20.0), doc("b", 15.0)))).isFalse();
+        assertThat(store.isStrongKeywordMatch(List.of(doc("a", 20.0)))).isTrue();
+        assertThat(store.isStrongKeywordMatch(List.of())).isFalse();
+    }
+}
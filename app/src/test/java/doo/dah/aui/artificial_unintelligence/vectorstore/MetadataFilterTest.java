@@ -0,0 +1,39 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataFilterTest {
+
+    private final Map<String, Object> metadata = Map.of(
+            "source", "direct_submission",
+            "tags", List.of("merch", "summer"),
+            "chunkIndex", 3);
+
+    private boolean matches(String expression) {
+        Filter.Expression filter = new FilterExpressionTextParser().parse(expression);
+        return MetadataFilter.matches(filter, metadata);
+    }
+
+    @Test
+    void comparesScalarsAndLists() {
+        assertThat(matches("source == 'direct_submission'")).isTrue();
+        assertThat(matches("tags == 'merch'")).isTrue();
+        assertThat(matches("tags in ['parade', 'summer']")).isTrue();
+        assertThat(matches("tags nin ['merch']")).isFalse();
+        assertThat(matches("chunkIndex >= 3 && chunkIndex < 4")).isTrue();
+    }
+
+    @Test
+    void missingFieldsOnlyMatchNegations() {
+        assertThat(matches("title == 'x'")).isFalse();
+        assertThat(matches("title != 'x'")).isTrue();
+        assertThat(matches("NOT(source == 'url') || title == 'x'")).isTrue();
+    }
+}
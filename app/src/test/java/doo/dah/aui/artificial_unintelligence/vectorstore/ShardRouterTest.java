@@ -0,0 +1,92 @@
+package doo.dah.aui.artificial_unintelligence.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardRouterTest {
+
+    private final ShardRouter router = new ShardRouter("general", shards());
+
+    private static Map<String, List<String>> shards() {
+        Map<String, List<String>> shards = new LinkedHashMap<>();
+        shards.put("merch", List.of("merch", "shirt", "hat", "store"));
+        shards.put("donations", List.of("donate", "donation"));
+        shards.put("parade", List.of("route", "parade", "parking"));
+        return shards;
+    }
+
+    private static SearchRequest query(String query) {
+        return SearchRequest.builder().query(query).build();
+    }
+
+    @Test
+    void keywordsMatchWholeTermsOnly() {
+        // "what" contains "hat", "restore" contains "store", "router" contains "route"
+        assertThat(router.route(query("What time is the parade?"))).containsExactlyInAnyOrder("parade", "general");
+        assertThat(router.route(query("how do I restore my router"))).isEqualTo(router.shards());
+    }
+
+    @Test
+    void pluralTermsMatchTheirKeyword() {
+        assertThat(router.route(query("Are there shirts and hats?"))).containsExactlyInAnyOrder("merch", "general");
+        assertThat(router.route(query("tax receipts for donations"))).containsExactlyInAnyOrder("donations", "general");
+    }
+
+    @Test
+    void queriesMatchingNothingFanOutToEveryShard() {
+        assertThat(router.route(query("hello there"))).containsExactlyInAnyOrder("general", "merch", "donations", "parade");
+    }
+
+    @Test
+    void tagFiltersTakePrecedenceOverKeywords() {
+        SearchRequest request = SearchRequest.builder().query("parade shirts").filterExpression("tags == 'donations'").build();
+
+        assertThat(router.route(request)).containsExactlyInAnyOrder("donations", "general");
+    }
+
+    @Test
+    void tagFiltersAndedWithOtherConditionsStillNarrowTheSearch() {
+        SearchRequest request = SearchRequest.builder().query("hello")
+                .filterExpression("source == 'faq' && tags in ['merch', 'parade']").build();
+
+        assertThat(router.route(request)).containsExactlyInAnyOrder("merch", "parade", "general");
+    }
+
+    @Test
+    void negatedTagFiltersFanOutToEveryShard() {
+        SearchRequest request = SearchRequest.builder().query("parade shirts")
+                .filterExpression("NOT (tags == 'merch')").build();
+
+        assertThat(router.route(request)).isEqualTo(router.shards());
+    }
+
+    @Test
+    void tagFiltersUnderAnOrFanOutToEveryShard() {
+        SearchRequest request = SearchRequest.builder().query("parade shirts")
+                .filterExpression("tags == 'merch' || source == 'faq'").build();
+
+        assertThat(router.route(request)).isEqualTo(router.shards());
+    }
+
+    @Test
+    void documentsAreStoredInTheirFirstShardTag() {
+        Document tagged = Document.builder().text("x").metadata(Map.of("tags", List.of("misc", "merch"))).build();
+
+        assertThat(router.shardFor(tagged)).isEqualTo("merch");
+        assertThat(router.shardFor(new Document("untagged"))).isEqualTo("general");
+    }
+
+    @Test
+    void defaultShardMustNotCollideWithAKeywordShard() {
+        assertThatThrownBy(() -> new ShardRouter("merch", shards()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}